@@ -0,0 +1,25 @@
+package net.wiiala.helpfullib.benchmark;
+
+/**
+ * This class is only used as target of invocations in the interaction benchmarks
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BenchmarkTarget {
+
+    private int counter;
+
+    public BenchmarkTarget() {
+    }
+
+    public Integer count() {
+        return ++counter & 0xFF;
+    }
+
+    public Integer add(Integer first, Integer second) {
+        return first + second;
+    }
+
+    public String name() {
+        return "benchmark";
+    }
+}
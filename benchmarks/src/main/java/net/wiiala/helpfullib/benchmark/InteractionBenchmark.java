@@ -0,0 +1,78 @@
+package net.wiiala.helpfullib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.wiiala.helpfullib.interactionstructure.OperationAction;
+import net.wiiala.helpfullib.interactionstructure.OperationBatch;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures invocation of OperationAction and running of OperationBatch
+ * with different sets of rules on every action
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InteractionBenchmark {
+
+    /**Rules set on every action: none, a not null rule or a range of two comparisons*/
+    @Param({"NONE", "NOTNULL", "RANGE"})
+    public String rules;
+
+    @Param({"1", "16"})
+    public int batchSize;
+
+    private OperationAction<BenchmarkTarget> action;
+    private OperationBatch batch;
+
+    @Setup
+    public void setup() throws Exception {
+        action = newAction();
+        batch = new OperationBatch();
+        for(int i = 0; i < batchSize; i++) {
+            batch.add(newAction());
+        }
+    }
+
+    private OperationAction<BenchmarkTarget> newAction() throws Exception {
+        OperationAction<BenchmarkTarget> created = new OperationAction(new BenchmarkTarget(), "add", 1, 2);
+        if(rules.equals("NOTNULL")) {
+            created.addRules(new OperationValidBehavior(COMPARISION.NOTNULL, null));
+        } else if(rules.equals("RANGE")) {
+            created.addRules(new OperationValidBehavior(COMPARISION.GREATEROREQUAL, 0));
+            created.addRules(new OperationValidBehavior(COMPARISION.LESS, 100));
+        }
+        return created;
+    }
+
+    @Benchmark
+    public Object invokeBound() throws Exception {
+        return action.invokeMethod();
+    }
+
+    @Benchmark
+    public Object invokeByName() throws Exception {
+        return action.invokeMethod("add", 1, 2);
+    }
+
+    @Benchmark
+    public OperationBatch runBatch() throws Exception {
+        batch.run();
+        return batch;
+    }
+}
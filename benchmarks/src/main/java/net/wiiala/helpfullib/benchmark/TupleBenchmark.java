@@ -0,0 +1,94 @@
+package net.wiiala.helpfullib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.wiiala.helpfullib.tuple.LongTupleElement;
+import net.wiiala.helpfullib.tuple.Tuple;
+import net.wiiala.helpfullib.tuple.TupleElement;
+import net.wiiala.helpfullib.tuple.TupleSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hot paths of Tuple
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TupleBenchmark {
+
+    private TupleElement name;
+    private TupleElement price;
+    private LongTupleElement timestamp;
+    private TupleSchema schema;
+    private Tuple<Item> tuple;
+
+    /**
+     * Simple class that tuples are turned into
+     */
+    public static class Item {
+        private final String name;
+        private final Double price;
+        private final long timestamp;
+
+        public Item() {
+            this(null, null, 0);
+        }
+
+        public Item(String name, Double price, long timestamp) {
+            this.name = name;
+            this.price = price;
+            this.timestamp = timestamp;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        name = new TupleElement("name", "item");
+        price = new TupleElement("price", 9.5);
+        timestamp = new LongTupleElement("timestamp", 1234567890123L);
+        tuple = new Tuple(Item.class, name, price, timestamp);
+        schema = tuple.getSchema();
+    }
+
+    @Benchmark
+    public Tuple constructFromElements() throws Exception {
+        return new Tuple(name, price, timestamp);
+    }
+
+    @Benchmark
+    public Tuple constructFromSchema() {
+        return new Tuple(schema, "item", 9.5, 1234567890123L);
+    }
+
+    @Benchmark
+    public TupleElement getElement() {
+        return tuple.getElement("price");
+    }
+
+    @Benchmark
+    public long getLong() {
+        return tuple.getLong("timestamp");
+    }
+
+    @Benchmark
+    public Item toObject() throws Exception {
+        return tuple.toObject("name", "price", "timestamp");
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return tuple.toString();
+    }
+}
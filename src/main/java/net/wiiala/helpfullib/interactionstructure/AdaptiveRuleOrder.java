@@ -0,0 +1,111 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Rules of an action in an order that is adapted to how they behave, rules that
+ * are cheap and often broken are tested first so a broken return value is found sooner.
+ *
+ * Every rule is counted on every test, time is only measured on every 16th return value
+ * and the rules are sorted again after every 256 return values.
+ * When several rules are broken the one that is reported may change as rules are sorted.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class AdaptiveRuleOrder {
+
+    private static final int TIMING_INTERVAL = 16;
+    private static final int REORDER_INTERVAL = 256;
+
+    private final List<OperationValidBehavior> source;
+    private final int sourceSize;
+    private final OperationValidBehavior[] rules;
+    private final FailureCost[] costs;
+    private int tested;
+
+    /**
+     * @param rules rules of action in the order they were added
+     */
+    AdaptiveRuleOrder(List<OperationValidBehavior> rules) {
+        this.source = rules;
+        this.sourceSize = rules.size();
+        this.rules = rules.toArray(new OperationValidBehavior[0]);
+        this.costs = new FailureCost[this.rules.length];
+        for(int i = 0; i < costs.length; i++) {
+            costs[i] = new FailureCost();
+        }
+    }
+
+    /**
+     * Tell if order was made of a list of rules, a list that has been added to is not
+     * @param rules current rules of action
+     * @return true if order can still be used
+     */
+    boolean isOf(List<OperationValidBehavior> rules) {
+        return source == rules && sourceSize == rules.size();
+    }
+
+    /**
+     * Test return value of method against rules in current order
+     * @param method invoked method
+     * @param value return value
+     * @return first broken rule or null if value follows all rules
+     */
+    OperationValidBehavior firstBroken(Method method, Object value) {
+        boolean timed = tested % TIMING_INTERVAL == 0;
+        if(++tested == REORDER_INTERVAL) {
+            tested = 0;
+            reorder();
+        }
+
+        Class<?> returnType = method.getReturnType();
+        for(int i = 0; i < rules.length; i++) {
+            boolean accepted;
+            if(timed) {
+                long start = System.nanoTime();
+                accepted = rules[i].accepts(returnType, value);
+                costs[i].record(System.nanoTime() - start, !accepted);
+            } else {
+                accepted = rules[i].accepts(returnType, value);
+                costs[i].record(!accepted);
+            }
+            if(!accepted) {
+                return rules[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get rules in the order they are tested
+     * @return copy of rules
+     */
+    OperationValidBehavior[] getRules() {
+        return rules.clone();
+    }
+
+    /**
+     * Sort rules by rank, rules of equal rank keep their order
+     */
+    private void reorder() {
+        double[] ranks = new double[rules.length];
+        for(int i = 0; i < ranks.length; i++) {
+            ranks[i] = costs[i].rank();
+        }
+        for(int i = 1; i < rules.length; i++) {
+            OperationValidBehavior rule = rules[i];
+            FailureCost cost = costs[i];
+            double rank = ranks[i];
+            int j = i - 1;
+            while(j >= 0 && ranks[j] > rank) {
+                rules[j + 1] = rules[j];
+                costs[j + 1] = costs[j];
+                ranks[j + 1] = ranks[j];
+                j--;
+            }
+            rules[j + 1] = rule;
+            costs[j + 1] = cost;
+            ranks[j + 1] = rank;
+        }
+    }
+}
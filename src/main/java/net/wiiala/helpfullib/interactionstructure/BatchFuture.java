@@ -0,0 +1,144 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of an asynchronous run of a batch, see {@link OperationBatch#runAsync(java.util.concurrent.Executor)}.
+ *
+ * The future completes with one result per operation when all operations has followed
+ * their rules. The first broken rule completes it exceptionally with the MethodBehaviourException
+ * and an operation that can't be invoked with its reflective exception, in both cases the
+ * operations after it are never invoked. A run that takes longer than its timeout completes
+ * exceptionally with a TimeoutException and a cancelled run stops before its next operation.
+ *
+ * Listeners are called once when the future is done, however it completed. An exception
+ * of a listener goes to the uncaught exception handler of the thread and don't stop the
+ * other listeners from being called.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BatchFuture extends FutureTask<List<OperationResult>> {
+
+    /**Thread that completes futures which has timed out, created when first needed*/
+    private static final class Timer {
+        private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "batch-future-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        static {
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**Guarded by itself, null when listeners has been called*/
+    private List<Runnable> listeners = new ArrayList();
+
+    private volatile Future<?> timeout;
+
+    /**
+     * @param operations operations to invoke in order, collection is not changed
+     * @param cache cache idempotent operations are served from or null
+     */
+    BatchFuture(Collection<OperationAction> operations, OperationResultCache cache) {
+        this(new Run(operations, cache));
+    }
+
+    private BatchFuture(Run run) {
+        super(run);
+        run.future = this;
+    }
+
+    /**
+     * Complete future with a TimeoutException if it is not done within timeout,
+     * the operation that is running when time is up is not interrupted
+     * @param time longest time run may take
+     * @param unit unit of time
+     */
+    void setTimeout(long time, TimeUnit unit) {
+        timeout = Timer.TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                setException(new TimeoutException("Batch was not done within timeout"));
+            }
+        }, time, unit);
+        if(isDone()) {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Add listener that is called when future is done, listener is called by
+     * the thread that completes the future or directly if future already is done
+     * @param listener listener to call
+     */
+    public void addListener(Runnable listener) {
+        synchronized(this) {
+            if(listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    @Override
+    protected void done() {
+        Future<?> scheduled = timeout;
+        if(scheduled != null) {
+            scheduled.cancel(false);
+        }
+
+        List<Runnable> called;
+        synchronized(this) {
+            called = listeners;
+            listeners = null;
+        }
+        for(Runnable listener : called) {
+            try {
+                listener.run();
+            } catch(RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Invokes operations one by one until all are done or future is completed
+     */
+    private static final class Run implements Callable<List<OperationResult>> {
+        private final Collection<OperationAction> operations;
+        private final OperationResultCache cache;
+        private BatchFuture future;
+
+        Run(Collection<OperationAction> operations, OperationResultCache cache) {
+            this.operations = operations;
+            this.cache = cache;
+        }
+
+        @Override
+        public List<OperationResult> call() throws Exception {
+            List<OperationResult> results = new ArrayList(operations.size());
+            for(OperationAction operation : operations) {
+                //Cancelled or timed out
+                if(future.isDone()) {
+                    return null;
+                }
+                results.add(new OperationResult(operation, operation.invokeMethod(cache), null));
+            }
+            return results;
+        }
+    }
+}
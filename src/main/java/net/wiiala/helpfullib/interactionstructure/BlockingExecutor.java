@@ -0,0 +1,60 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for operations that block, e.g. on file or database reads, that runs at most
+ * a given number of operations at the same time.
+ *
+ * This version runs operations on a bounded pool of platform threads. On Java 21 and later
+ * the multi-release jar holds a version of this class that runs every operation on its
+ * own virtual thread instead.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class BlockingExecutor implements Executor {
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param concurrency highest number of operations run at the same time
+     */
+    BlockingExecutor(int concurrency) {
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "operation-runner-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Check if operations are run on virtual threads, a method and not a constant
+     * so the value is not copied into classes compiled against this version
+     * @return false
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Let threads end when operations that are running are done
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+}
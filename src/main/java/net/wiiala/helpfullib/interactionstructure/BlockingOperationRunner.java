@@ -0,0 +1,57 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This class runs operations that spend their time blocked, e.g. on file reads or
+ * database lookups, with many operations waiting at the same time. Unlike
+ * {@link OperationBatch#runParallel()} a run don't stop on the first failure,
+ * every operation is invoked and its return value or failure is collected.
+ * Operations still wait for the operations they depend on and are not invoked
+ * if one of those failed.
+ *
+ * On Java 21 and later every operation runs on its own virtual thread, on older
+ * versions operations run on a pool of platform threads as large as the concurrency limit.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BlockingOperationRunner {
+
+    private final int concurrency;
+
+    /**
+     * Create runner with a limit on how many operations that may run at the same time
+     * @param concurrency highest number of operations run at the same time
+     */
+    public BlockingOperationRunner(int concurrency) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1 but was " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Invoke all operations and collect their results
+     * @param operations operations to run, e.g. an OperationBatch
+     * @return one result per operation in the order of operations
+     * @throws InterruptedException when waiting thread is interrupted, operations that
+     *         has not started are then never run
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     */
+    public List<OperationResult> run(Collection<OperationAction> operations) throws InterruptedException {
+        BlockingExecutor executor = new BlockingExecutor(Math.min(concurrency, Math.max(1, operations.size())));
+        try {
+            return new OperationGraph(operations).collect(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Check if operations are run on virtual threads
+     * @return true on Java 21 and later
+     */
+    public static boolean usesVirtualThreads() {
+        return BlockingExecutor.isVirtual();
+    }
+}
@@ -0,0 +1,170 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Invokes the method and rules of one action on many instances. Method, parameters and
+ * rules are taken from the action once, so the action is never changed and chunks of
+ * instances can be invoked by several threads at the same time.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class BulkInvocation {
+
+    private final OperationAction<?> action;
+    private final MethodInvoker invoker;
+    private final Object[] parameters;
+    private final OperationValidBehavior[] rules;
+    private final Object[] instances;
+    private final Object[] values;
+
+    /**Failures of each chunk, merged in chunk order when all chunks are done*/
+    private final List<Object>[] chunkFailures;
+    private final int chunkSize;
+
+    BulkInvocation(OperationAction<?> action, MethodInvoker invoker, Object[] parameters,
+                   List<OperationValidBehavior> rules, Object[] instances, int chunkSize) {
+        this.action = action;
+        this.invoker = invoker;
+        this.parameters = parameters;
+        this.rules = rules.toArray(new OperationValidBehavior[0]);
+        this.instances = instances;
+        this.values = new Object[instances.length];
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunkFailures = new List[(instances.length + this.chunkSize - 1) / this.chunkSize];
+    }
+
+    /**
+     * Invoke all chunks by calling thread
+     */
+    BulkOperationResult run() {
+        for(int chunk = 0; chunk < chunkFailures.length; chunk++) {
+            invokeChunk(chunk);
+        }
+        return result();
+    }
+
+    /**
+     * Invoke chunks on executor and wait for all of them
+     */
+    BulkOperationResult run(Executor executor) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(chunkFailures.length);
+        final Throwable[] error = new Throwable[1];
+        for(int i = 0; i < chunkFailures.length; i++) {
+            final int chunk = i;
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        invokeChunk(chunk);
+                    } catch(RuntimeException | Error e) {
+                        synchronized(error) {
+                            error[0] = e;
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch(RejectedExecutionException e) {
+                //Calling thread takes chunks executor don't accept
+                task.run();
+            }
+        }
+        done.await();
+
+        synchronized(error) {
+            if(error[0] instanceof RuntimeException) {
+                throw (RuntimeException) error[0];
+            }
+            if(error[0] instanceof Error) {
+                throw (Error) error[0];
+            }
+        }
+        return result();
+    }
+
+    /**
+     * Invoke method on instances of one chunk, failures are kept as pairs of index and exception
+     */
+    private void invokeChunk(int chunk) {
+        List<Object> failures = null;
+        MethodInvoker current = invoker;
+        OperationMetricsListener listener = OperationAction.getMetricsListener();
+        int end = Math.min(instances.length, (chunk + 1) * chunkSize);
+
+        for(int i = chunk * chunkSize; i < end; i++) {
+            Object instance = instances[i];
+            Exception failure = null;
+            long start = listener == null ? 0 : System.nanoTime();
+            try {
+                if(instance == null) {
+                    throw new IllegalArgumentException("Instance at index " + i + " is null");
+                }
+                if(current.getOwner() != instance.getClass()) {
+                    //Subclasses may override or overload method
+                    current = MethodResolver.resolve(instance.getClass(), invoker.getMethod().getName(), parameters);
+                }
+                Object value = current.invoke(instance, parameters);
+                if(listener != null) {
+                    listener.invoked(action, System.nanoTime() - start);
+                }
+                for(OperationValidBehavior rule : rules) {
+                    try {
+                        rule.validateMethod(current.getMethod(), value);
+                    } catch(MethodBehaviourException e) {
+                        if(listener != null) {
+                            listener.ruleBroken(action, rule);
+                        }
+                        throw e;
+                    }
+                }
+                values[i] = value;
+            } catch(NoSuchMethodException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+                if(listener != null) {
+                    listener.invocationFailed(action, System.nanoTime() - start, e);
+                }
+                failure = e;
+            } catch(MethodBehaviourException e) {
+                failure = e;
+            }
+
+            if(failure != null) {
+                if(failures == null) {
+                    failures = new ArrayList();
+                }
+                failures.add(i);
+                failures.add(failure);
+            }
+        }
+        chunkFailures[chunk] = failures;
+    }
+
+    private BulkOperationResult result() {
+        int count = 0;
+        for(List<Object> failures : chunkFailures) {
+            count += failures == null ? 0 : failures.size() / 2;
+        }
+
+        int[] indexes = new int[count];
+        Exception[] exceptions = new Exception[count];
+        int position = 0;
+        for(List<Object> failures : chunkFailures) {
+            if(failures == null) {
+                continue;
+            }
+            for(int i = 0; i < failures.size(); i += 2) {
+                indexes[position] = (Integer) failures.get(i);
+                exceptions[position] = (Exception) failures.get(i + 1);
+                position++;
+            }
+        }
+        return new BulkOperationResult(values, indexes, exceptions);
+    }
+}
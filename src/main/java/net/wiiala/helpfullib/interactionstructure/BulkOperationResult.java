@@ -0,0 +1,102 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.Arrays;
+
+/**
+ * Result of invoking one operation on many instances, see
+ * {@link OperationAction#invokeAll(Object[])}. Holds the return value of every instance
+ * and, for the few instances that failed, why they failed. Failures are kept sorted by
+ * index so that a result of mostly successful invocations is not larger than its values.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BulkOperationResult {
+
+    private final Object[] values;
+    private final int[] failedIndexes;
+    private final Exception[] failures;
+
+    /**
+     * @param values return value per instance, null for failed instances
+     * @param failedIndexes indexes of failed instances in ascending order
+     * @param failures failure per failed instance
+     */
+    BulkOperationResult(Object[] values, int[] failedIndexes, Exception[] failures) {
+        this.values = values;
+        this.failedIndexes = failedIndexes;
+        this.failures = failures;
+    }
+
+    /**
+     * Get number of instances operation was invoked on
+     * @return number of instances
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get number of instances where invocation failed or a rule was broken
+     * @return number of failures
+     */
+    public int getFailureCount() {
+        return failedIndexes.length;
+    }
+
+    /**
+     * Check if operation succeeded on all instances
+     * @return true if there are no failures
+     */
+    public boolean isSuccessful() {
+        return failedIndexes.length == 0;
+    }
+
+    /**
+     * Check if operation succeeded on one instance
+     * @param index index of instance
+     * @return true if method returned and followed all rules
+     */
+    public boolean isSuccessful(int index) {
+        checkIndex(index);
+        return Arrays.binarySearch(failedIndexes, index) < 0;
+    }
+
+    /**
+     * Get return value of one instance
+     * @param index index of instance
+     * @return return value or null if instance failed
+     */
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Get why operation failed on one instance
+     * @param index index of instance
+     * @return MethodBehaviourException when a rule was broken, reflective exception
+     *         when method could not be invoked or threw, null if successful
+     */
+    public Exception getFailure(int index) {
+        checkIndex(index);
+        int position = Arrays.binarySearch(failedIndexes, index);
+        return position < 0 ? null : failures[position];
+    }
+
+    /**
+     * Get indexes of instances that failed
+     * @return copy of indexes in ascending order
+     */
+    public int[] getFailedIndexes() {
+        return failedIndexes.clone();
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= values.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + values.length + " instances");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return values.length + " instances, " + failedIndexes.length + " failed";
+    }
+}
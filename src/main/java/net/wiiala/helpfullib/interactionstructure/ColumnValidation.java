@@ -0,0 +1,436 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import net.wiiala.helpfullib.tuple.TupleBatch;
+import net.wiiala.helpfullib.tuple.TupleSchema;
+
+/**
+ * This class validates whole columns of primitive values against a set of rules,
+ * e.g. a column of a {@link TupleBatch} or the return values of many invocations.
+ * A value follows the rules when the same value, boxed to the wrapper class of its column,
+ * would be accepted by every rule as a return value.
+ *
+ * When rules are added they are merged into one lower and one upper bound per column type,
+ * comparisions, ranges and equality with a number then cost the same whatever the number of rules.
+ * Columns are checked in blocks whose min and max are found in loops the JIT can vectorize,
+ * and only a block whose min or max is out of bounds is scanned value by value.
+ * Rules that can't be merged, e.g. a comparision with an object that is not a number,
+ * are tested on every boxed value.
+ *
+ * Validation don't change this object, so several threads can validate columns at the
+ * same time as long as no rules are added.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class ColumnValidation {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private final List<OperationValidBehavior> rules = new ArrayList();
+    private Bounds intBounds = new Bounds(int.class, rules);
+    private Bounds longBounds = new Bounds(long.class, rules);
+    private Bounds doubleBounds = new Bounds(double.class, rules);
+
+    /**
+     * Add rule that every value must follow
+     * @param rule rule to follow, VOID rules only apply to methods and can't be used
+     */
+    public void addRules(OperationValidBehavior rule) {
+        if(rule.getComparision() == OperationValidBehavior.COMPARISION.VOID) {
+            throw new IllegalArgumentException("VOID rule can only be used on methods");
+        }
+        rules.add(rule);
+        intBounds = new Bounds(int.class, rules);
+        longBounds = new Bounds(long.class, rules);
+        doubleBounds = new Bounds(double.class, rules);
+    }
+
+    /**
+     * Find first value that breaks a rule
+     * @param values column to validate
+     * @return index of first value that breaks a rule or -1 if all values follow rules
+     */
+    public int firstFailure(int[] values) {
+        return intBounds.scan(values, values.length, null);
+    }
+
+    /**
+     * Find first value that breaks a rule
+     * @param values column to validate
+     * @return index of first value that breaks a rule or -1 if all values follow rules
+     */
+    public int firstFailure(long[] values) {
+        return longBounds.scan(values, values.length, null);
+    }
+
+    /**
+     * Find first value that breaks a rule
+     * @param values column to validate
+     * @return index of first value that breaks a rule or -1 if all values follow rules
+     */
+    public int firstFailure(double[] values) {
+        return doubleBounds.scan(values, values.length, null);
+    }
+
+    /**
+     * Find first row of a batch whose value breaks a rule
+     * @param batch batch to validate
+     * @param identifier identifier of column to validate
+     * @return index of first row that breaks a rule or -1 if all rows follow rules
+     * @throws IllegalArgumentException when identifier don't exist in batch
+     */
+    public int firstFailure(TupleBatch<?> batch, String identifier) {
+        return scan(batch, identifier, null);
+    }
+
+    /**
+     * Find every value that breaks a rule
+     * @param values column to validate
+     * @return set where bit of every value that breaks a rule is set
+     */
+    public BitSet failures(int[] values) {
+        BitSet failures = new BitSet(values.length);
+        intBounds.scan(values, values.length, failures);
+        return failures;
+    }
+
+    /**
+     * Find every value that breaks a rule
+     * @param values column to validate
+     * @return set where bit of every value that breaks a rule is set
+     */
+    public BitSet failures(long[] values) {
+        BitSet failures = new BitSet(values.length);
+        longBounds.scan(values, values.length, failures);
+        return failures;
+    }
+
+    /**
+     * Find every value that breaks a rule
+     * @param values column to validate
+     * @return set where bit of every value that breaks a rule is set
+     */
+    public BitSet failures(double[] values) {
+        BitSet failures = new BitSet(values.length);
+        doubleBounds.scan(values, values.length, failures);
+        return failures;
+    }
+
+    /**
+     * Find every row of a batch whose value breaks a rule
+     * @param batch batch to validate
+     * @param identifier identifier of column to validate
+     * @return set where bit of every row that breaks a rule is set
+     * @throws IllegalArgumentException when identifier don't exist in batch
+     */
+    public BitSet failures(TupleBatch<?> batch, String identifier) {
+        BitSet failures = new BitSet(batch.size());
+        scan(batch, identifier, failures);
+        return failures;
+    }
+
+    /**
+     * Scan the rows of a column of a batch, primitive columns are scanned in blocks
+     * and object columns value by value
+     */
+    private int scan(TupleBatch<?> batch, String identifier, BitSet failures) {
+        TupleSchema schema = batch.getSchema();
+        int slot = schema.indexOf(identifier);
+        if(slot < 0) {
+            throw new IllegalArgumentException("Identifier " + identifier + " don't exist in batch " + schema);
+        }
+        Class<?> type = schema.getType(slot);
+        if(type == int.class) {
+            return intBounds.scan(batch.getIntColumn(identifier), batch.size(), failures);
+        }
+        if(type == long.class) {
+            return longBounds.scan(batch.getLongColumn(identifier), batch.size(), failures);
+        }
+        if(type == double.class) {
+            return doubleBounds.scan(batch.getDoubleColumn(identifier), batch.size(), failures);
+        }
+
+        Object[] values = type == boolean.class ? box(batch.getBooleanColumn(identifier), batch.size())
+                                                : batch.getColumn(identifier);
+        int first = -1;
+        for(int i = 0; i < batch.size(); i++) {
+            if(!acceptsAll(rules, values[i])) {
+                if(failures == null) {
+                    return i;
+                }
+                failures.set(i);
+                first = first < 0 ? i : first;
+            }
+        }
+        return first;
+    }
+
+    private static Object[] box(boolean[] values, int size) {
+        Object[] boxed = new Object[size];
+        for(int i = 0; i < size; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    private static boolean acceptsAll(List<OperationValidBehavior> rules, Object value) {
+        for(OperationValidBehavior rule : rules) {
+            if(!rule.accepts(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long
+               || value instanceof Short || value instanceof Byte;
+    }
+
+    private static boolean isNumber(Object value) {
+        return isIntegral(value) || value instanceof Double || value instanceof Float;
+    }
+
+    /**
+     * Rules merged for one column type. Integral limits bound int and long columns exactly,
+     * decimal limits bound the value as a double the same way a single rule compares them
+     */
+    private static final class Bounds {
+        private final Class<?> columnType;
+        /**Inclusive bounds of int and long values*/
+        private long lower = Long.MIN_VALUE;
+        private long upper = Long.MAX_VALUE;
+        /**Bounds of values as double, NaN never follows them*/
+        private boolean decimalBounded;
+        private double decimalLower = Double.NEGATIVE_INFINITY;
+        private double decimalUpper = Double.POSITIVE_INFINITY;
+        private boolean decimalLowerIncluded = true;
+        private boolean decimalUpperIncluded = true;
+        /**A rule that no value of column type follows*/
+        private boolean never;
+        /**Rules that are tested on every boxed value*/
+        private final List<OperationValidBehavior> boxed = new ArrayList();
+
+        Bounds(Class<?> columnType, List<OperationValidBehavior> rules) {
+            this.columnType = columnType;
+            for(OperationValidBehavior rule : rules) {
+                merge(rule);
+            }
+        }
+
+        private void merge(OperationValidBehavior rule) {
+            Object value = rule.getValidValue();
+            switch(rule.getComparision()) {
+                case NOTNULL:
+                    return;
+                case PATTERN:
+                    never = true;
+                    return;
+                case EQUAL:
+                    mergeEqual(rule, value);
+                    return;
+                case GREATER:
+                case GREATEROREQUAL:
+                    mergeLimit(rule, true, value, false, null);
+                    return;
+                case LESS:
+                case LESSOREQUAL:
+                    mergeLimit(rule, false, null, true, value);
+                    return;
+                case RANGE:
+                    mergeLimit(rule, true, value, true, rule.getMaxValue());
+                    return;
+                default:
+                    boxed.add(rule);
+            }
+        }
+
+        /**
+         * A value only equals a number of the wrapper class of its column
+         */
+        private void mergeEqual(OperationValidBehavior rule, Object value) {
+            if(columnType == int.class ? value instanceof Integer : (columnType == long.class && value instanceof Long)) {
+                long number = ((Number) value).longValue();
+                lower = Math.max(lower, number);
+                upper = Math.min(upper, number);
+            } else if(columnType == double.class && value instanceof Double) {
+                double number = (Double) value;
+                if(number != number || number == 0) {
+                    //NaN equals NaN and 0.0 don't equal -0.0
+                    boxed.add(rule);
+                } else {
+                    mergeDecimal(number, true, true);
+                    mergeDecimal(number, true, false);
+                }
+            } else {
+                never = true;
+            }
+        }
+
+        /**
+         * Merge a lower and/or an upper limit, a missing limit is never comparable
+         * and a rule with a limit that is not a number is tested on boxed values
+         */
+        private void mergeLimit(OperationValidBehavior rule, boolean hasMin, Object min, boolean hasMax, Object max) {
+            if((hasMin && min == null) || (hasMax && max == null)) {
+                never = true;
+            } else if((hasMin && !isNumber(min)) || (hasMax && !isNumber(max))) {
+                boxed.add(rule);
+            } else {
+                if(hasMin) {
+                    mergeNumber((Number) min, rule.getComparision() != OperationValidBehavior.COMPARISION.GREATER, true);
+                }
+                if(hasMax) {
+                    mergeNumber((Number) max, rule.getComparision() != OperationValidBehavior.COMPARISION.LESS, false);
+                }
+            }
+        }
+
+        private void mergeNumber(Number limit, boolean included, boolean isLower) {
+            if(columnType != double.class && isIntegral(limit)) {
+                long number = limit.longValue();
+                if(isLower) {
+                    if(!included && number == Long.MAX_VALUE) {
+                        never = true;
+                    } else {
+                        lower = Math.max(lower, included ? number : number + 1);
+                    }
+                } else {
+                    if(!included && number == Long.MIN_VALUE) {
+                        never = true;
+                    } else {
+                        upper = Math.min(upper, included ? number : number - 1);
+                    }
+                }
+                return;
+            }
+            double number = limit.doubleValue();
+            if(number != number) {
+                never = true;
+                return;
+            }
+            mergeDecimal(number, included, isLower);
+        }
+
+        private void mergeDecimal(double number, boolean included, boolean isLower) {
+            decimalBounded = true;
+            if(isLower) {
+                if(number > decimalLower || (number == decimalLower && !included)) {
+                    decimalLower = number;
+                    decimalLowerIncluded = included;
+                }
+            } else {
+                if(number < decimalUpper || (number == decimalUpper && !included)) {
+                    decimalUpper = number;
+                    decimalUpperIncluded = included;
+                }
+            }
+        }
+
+        private boolean acceptsLong(long value) {
+            return value >= lower && value <= upper && (!decimalBounded || acceptsDecimal(value));
+        }
+
+        private boolean acceptsDecimal(double value) {
+            return (decimalLowerIncluded ? value >= decimalLower : value > decimalLower)
+                   && (decimalUpperIncluded ? value <= decimalUpper : value < decimalUpper);
+        }
+
+        /**
+         * Scan first values of a column
+         * @param values int[], long[] or double[] of column type
+         * @param size number of values to scan
+         * @param failures set to mark every broken value in or null to stop at first broken value
+         * @return index of first broken value or -1
+         */
+        int scan(Object values, int size, BitSet failures) {
+            if(never) {
+                if(size > 0 && failures != null) {
+                    failures.set(0, size);
+                }
+                return size > 0 ? 0 : -1;
+            }
+            int first = -1;
+            for(int start = 0; start < size; start += BLOCK_SIZE) {
+                int end = Math.min(size, start + BLOCK_SIZE);
+                if(boxed.isEmpty() && blockAccepted(values, start, end)) {
+                    continue;
+                }
+                for(int i = start; i < end; i++) {
+                    if(!accepts(values, i)) {
+                        if(failures == null) {
+                            return i;
+                        }
+                        failures.set(i);
+                        first = first < 0 ? i : first;
+                    }
+                }
+            }
+            return first;
+        }
+
+        /**
+         * Tell if all values of a block follow bounds from their min and max, the values that
+         * follow bounds are an interval so a block follows them when its min and max do
+         */
+        private boolean blockAccepted(Object values, int start, int end) {
+            if(columnType == int.class) {
+                int[] column = (int[]) values;
+                int min = column[start];
+                int max = column[start];
+                for(int i = start + 1; i < end; i++) {
+                    min = Math.min(min, column[i]);
+                    max = Math.max(max, column[i]);
+                }
+                return acceptsLong(min) && acceptsLong(max);
+            }
+            if(columnType == long.class) {
+                long[] column = (long[]) values;
+                long min = column[start];
+                long max = column[start];
+                for(int i = start + 1; i < end; i++) {
+                    min = Math.min(min, column[i]);
+                    max = Math.max(max, column[i]);
+                }
+                return acceptsLong(min) && acceptsLong(max);
+            }
+            if(!decimalBounded) {
+                return true;
+            }
+            double[] column = (double[]) values;
+            double min = column[start];
+            double max = column[start];
+            for(int i = start + 1; i < end; i++) {
+                //NaN is kept by min and max and then breaks bounds
+                min = Math.min(min, column[i]);
+                max = Math.max(max, column[i]);
+            }
+            return acceptsDecimal(min) && acceptsDecimal(max);
+        }
+
+        private boolean accepts(Object values, int index) {
+            Object value;
+            if(columnType == int.class) {
+                int number = ((int[]) values)[index];
+                if(!acceptsLong(number)) {
+                    return false;
+                }
+                value = number;
+            } else if(columnType == long.class) {
+                long number = ((long[]) values)[index];
+                if(!acceptsLong(number)) {
+                    return false;
+                }
+                value = number;
+            } else {
+                double number = ((double[]) values)[index];
+                if(decimalBounded && !acceptsDecimal(number)) {
+                    return false;
+                }
+                value = number;
+            }
+            return boxed.isEmpty() || acceptsAll(boxed, value);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of plan builders that are generated from {@link InteractionPlan}.
+ * Steps are resolved and ordered at compile time and every step has an invoker that
+ * calls its method directly, so building and running a plan does no reflection.
+ *
+ * Operations of generated plans are not reported to the metrics listener of
+ * {@link OperationAction}. A builder can be used by one thread at a time and
+ * be built into any number of plans.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public abstract class CompiledPlanBuilder {
+
+    private final String[] identifiers;
+    private final Class<?>[] returnTypes;
+    private final OperationInvoker[] invokers;
+    private final boolean[] set;
+    private final Object[] instances;
+    private final Object[][] parameters;
+    private final List<OperationValidBehavior>[] rules;
+
+    /**
+     * @param identifiers identifiers of steps in the order they are invoked
+     * @param returnTypes declared return type of method of every step
+     * @param invokers invoker of every step
+     */
+    protected CompiledPlanBuilder(String[] identifiers, Class<?>[] returnTypes, OperationInvoker[] invokers) {
+        if(identifiers.length != returnTypes.length || identifiers.length != invokers.length) {
+            throw new IllegalArgumentException("Every step needs an identifier, a return type and an invoker");
+        }
+        this.identifiers = identifiers;
+        this.returnTypes = returnTypes;
+        this.invokers = invokers;
+        this.set = new boolean[identifiers.length];
+        this.instances = new Object[identifiers.length];
+        this.parameters = new Object[identifiers.length][];
+        this.rules = new List[identifiers.length];
+        for(int step = 0; step < rules.length; step++) {
+            rules[step] = new ArrayList();
+        }
+    }
+
+    /**
+     * Set instance and parameters of a step
+     * @param step index of step in invocation order
+     * @param instance instance to invoke method on or null for static methods
+     * @param parameters parameters of method, array is kept by builder
+     */
+    protected final void setStep(int step, Object instance, Object[] parameters) {
+        this.set[step] = true;
+        this.instances[step] = instance;
+        this.parameters[step] = parameters;
+    }
+
+    /**
+     * Add rule that return value of a step must follow
+     * @param identifier identifier of step
+     * @param rule rule to follow
+     * @throws IllegalArgumentException when plan has no such step
+     */
+    public void addRules(String identifier, OperationValidBehavior rule) {
+        for(int step = 0; step < identifiers.length; step++) {
+            if(identifiers[step].equals(identifier)) {
+                rules[step].add(rule);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Plan has no step " + identifier);
+    }
+
+    /**
+     * Build plan of steps, later changes to builder are not part of plan
+     * @return immutable plan
+     * @throws IllegalStateException when a step has not been set
+     */
+    public OperationPlan build() {
+        PlannedOperation[] operations = new PlannedOperation[identifiers.length];
+        for(int step = 0; step < operations.length; step++) {
+            if(!set[step]) {
+                throw new IllegalStateException("Step " + identifiers[step] + " has not been set");
+            }
+            operations[step] = new PlannedOperation(identifiers[step], instances[step], invokers[step], returnTypes[step],
+                                                    parameters[step], rules[step].toArray(new OperationValidBehavior[0]));
+        }
+        return new OperationPlan(operations);
+    }
+}
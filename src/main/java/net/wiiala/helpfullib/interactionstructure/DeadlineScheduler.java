@@ -0,0 +1,329 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs batches within deadlines to cut the tail latency of a batch, e.g. when one
+ * action now and then stalls and would otherwise hold up the whole batch.
+ *
+ * An action with a timeout is invoked on the executor and given up on with a
+ * TimeoutException when it is not done in time. When the deadline of the batch has
+ * passed the remaining actions that are not critical are dropped, and running ones
+ * are given up on, while critical actions are still invoked within their own timeouts.
+ *
+ * Idempotent actions can be hedged: when an invocation takes longer than a percentile
+ * of earlier invocations of the same method a second invocation is started and the
+ * first one that returns a value that follows the rules is used. Both invocations run on
+ * the same instance at the same time. Latencies are kept per method by the scheduler.
+ *
+ * An invocation that is given up on is interrupted but can't be stopped if the method
+ * ignores interrupts, it then keeps its thread of the executor until it returns.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class DeadlineScheduler {
+
+    private static final int DEFAULT_MINIMUM_SAMPLES = 20;
+
+    private final Executor executor;
+    private long deadline;
+    private double hedgePercentile;
+    private int minimumSamples = DEFAULT_MINIMUM_SAMPLES;
+
+    private final ConcurrentMap<Method, LatencyHistogram> latencies = new ConcurrentHashMap();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param executor executor that invocations with a timeout and hedged invocations are run on,
+     *        it needs a free thread for every invocation that is given up on and still running
+     */
+    public DeadlineScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Set deadline of every run of a batch, counted from when the run starts
+     * @param time time batch may take, zero for no deadline
+     * @param unit unit of time
+     */
+    public void setDeadline(long time, TimeUnit unit) {
+        if(time < 0) {
+            throw new IllegalArgumentException("Deadline can't be negative but was " + time);
+        }
+        this.deadline = unit.toNanos(time);
+    }
+
+    /**
+     * Hedge idempotent actions whose invocation takes longer than a percentile of earlier
+     * invocations of the same method, e.g. 95 starts a second invocation at the 95th percentile
+     * @param percentile percentile from 0 to 100, zero to not hedge
+     * @param minimumSamples number of invocations of a method that must be measured before it is hedged
+     */
+    public void setHedging(double percentile, int minimumSamples) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be within 0 and 100 but was " + percentile);
+        }
+        if(minimumSamples < 1) {
+            throw new IllegalArgumentException("Minimum samples must be at least 1 but was " + minimumSamples);
+        }
+        this.hedgePercentile = percentile;
+        this.minimumSamples = minimumSamples;
+    }
+
+    /**
+     * Get latencies of a method as measured by this scheduler
+     * @param method invoked method
+     * @return histogram in nanoseconds or null if method has not been invoked
+     */
+    public LatencyHistogram getLatency(Method method) {
+        return latencies.get(method);
+    }
+
+    /**
+     * Get number of second invocations that has been started
+     * @return hedged invocations
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Get number of hedged invocations that returned before the first one
+     * @return second invocations that was used
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Get number of invocations that was given up on
+     * @return timed out invocations
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * Get number of actions that was dropped since the deadline of their batch had passed
+     * @return dropped actions
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Run actions of a batch in correct order within deadlines.
+     * Actions that depend on an action that failed or was dropped are not invoked and
+     * a failed critical action stops the run
+     * @param actions actions in batch order
+     * @return one result per action in the order they were run, dropped actions are not invoked
+     * @throws InterruptedException when waiting thread is interrupted
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     */
+    public List<OperationResult> run(Collection<OperationAction> actions) throws InterruptedException {
+        long start = System.nanoTime();
+        Collection<OperationAction> ordered = OperationGraph.order(actions);
+        List<OperationResult> results = new ArrayList(ordered.size());
+        Map<OperationAction, Boolean> passed = new IdentityHashMap();
+        boolean stopped = false;
+
+        for(OperationAction action : ordered) {
+            long remaining = deadline == 0 ? Long.MAX_VALUE : deadline - (System.nanoTime() - start);
+            boolean drop = remaining <= 0 && !action.isCritical();
+            if(stopped || drop || !dependenciesPassed(action, passed)) {
+                if(drop && !stopped) {
+                    dropped.incrementAndGet();
+                }
+                results.add(new OperationResult(action));
+                passed.put(action, false);
+                continue;
+            }
+
+            long limit = action.getTimeout(TimeUnit.NANOSECONDS);
+            if(!action.isCritical() && deadline != 0) {
+                limit = limit == 0 ? remaining : Math.min(limit, remaining);
+            }
+            OperationResult result = invoke(action, limit);
+            results.add(result);
+            passed.put(action, result.isSuccessful());
+            if(!result.isSuccessful() && action.isCritical()) {
+                stopped = true;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Dependencies that are not in batch are ignored
+     */
+    private static boolean dependenciesPassed(OperationAction action, Map<OperationAction, Boolean> passed) {
+        for(Object dependency : action.getDependencies()) {
+            if(Boolean.FALSE.equals(passed.get(dependency))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invoke action on calling thread when it has no limit and is not hedged,
+     * otherwise on executor
+     * @param limit longest time to wait in nanoseconds or zero to wait until done
+     */
+    private OperationResult invoke(OperationAction action, long limit) throws InterruptedException {
+        PlannedOperation operation;
+        try {
+            operation = action.plan();
+        } catch(IllegalStateException | IllegalArgumentException e) {
+            return new OperationResult(action, null, e);
+        }
+
+        long delay = hedgeDelayOf(action, operation.getMethod());
+        if(limit == 0 && delay < 0) {
+            try {
+                return new OperationResult(action, new Attempt(operation).call(), null);
+            } catch(IllegalAccessException | InvocationTargetException | MethodBehaviourException | RuntimeException e) {
+                return new OperationResult(action, null, e);
+            }
+        }
+        return invokeOnExecutor(action, operation, limit, delay);
+    }
+
+    /**
+     * Delay before a second invocation is started
+     * @return delay in nanoseconds or -1 if action is not hedged
+     */
+    private long hedgeDelayOf(OperationAction action, Method method) {
+        if(hedgePercentile == 0 || !action.isIdempotent()) {
+            return -1;
+        }
+        LatencyHistogram latency = latencies.get(method);
+        if(latency == null || latency.getCount() < minimumSamples) {
+            return -1;
+        }
+        return latency.getValueAtPercentile(hedgePercentile);
+    }
+
+    /**
+     * Invoke operation on executor, start a second invocation after delay and wait
+     * for the first one that succeeds or until limit
+     */
+    private OperationResult invokeOnExecutor(OperationAction action, PlannedOperation operation,
+                                             long limit, long delay) throws InterruptedException {
+        ExecutorCompletionService<Object> service = new ExecutorCompletionService(executor);
+        List<Future<Object>> attempts = new ArrayList(2);
+        long start = System.nanoTime();
+        try {
+            try {
+                attempts.add(service.submit(new Attempt(operation)));
+            } catch(RejectedExecutionException e) {
+                return new OperationResult(action, null, e);
+            }
+
+            Throwable failure = null;
+            int pending = 1;
+            boolean hedged = delay < 0;
+            while(true) {
+                long elapsed = System.nanoTime() - start;
+                long wait = limit == 0 ? Long.MAX_VALUE : limit - elapsed;
+                if(!hedged) {
+                    wait = Math.min(wait, delay - elapsed);
+                }
+                Future<Object> done = wait <= 0 ? service.poll() : service.poll(wait, TimeUnit.NANOSECONDS);
+
+                if(done == null) {
+                    elapsed = System.nanoTime() - start;
+                    if(limit != 0 && elapsed >= limit) {
+                        timeouts.incrementAndGet();
+                        return new OperationResult(action, null, new TimeoutException(
+                            "Action was not done within " + TimeUnit.NANOSECONDS.toMillis(limit) + " ms"));
+                    }
+                    if(!hedged && elapsed >= delay) {
+                        hedged = true;
+                        try {
+                            attempts.add(service.submit(new Attempt(operation)));
+                            hedges.incrementAndGet();
+                            pending++;
+                        } catch(RejectedExecutionException e) {
+                            //Wait for first invocation only
+                        }
+                    }
+                    continue;
+                }
+
+                pending--;
+                try {
+                    Object value = done.get();
+                    if(attempts.size() > 1 && done == attempts.get(1)) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return new OperationResult(action, value, null);
+                } catch(ExecutionException e) {
+                    if(e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    failure = e.getCause();
+                }
+                if(pending == 0) {
+                    return new OperationResult(action, null, failure);
+                }
+            }
+        } finally {
+            for(Future<Object> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * One invocation of an operation that records its latency
+     */
+    private final class Attempt implements Callable<Object> {
+        private final PlannedOperation operation;
+
+        Attempt(PlannedOperation operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public Object call() throws IllegalAccessException, InvocationTargetException, MethodBehaviourException {
+            long start = System.nanoTime();
+            try {
+                return operation.invoke();
+            } finally {
+                latencyOf(operation.getMethod()).record(System.nanoTime() - start);
+            }
+        }
+
+        private LatencyHistogram latencyOf(Method method) {
+            LatencyHistogram latency = latencies.get(method);
+            if(latency == null) {
+                latency = new LatencyHistogram();
+                LatencyHistogram previous = latencies.putIfAbsent(method, latency);
+                if(previous != null) {
+                    latency = previous;
+                }
+            }
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+/**
+ * Measured cost and failure rate of a check, e.g. a rule or an action of a batch,
+ * used to run checks that are cheap and likely to fail first.
+ *
+ * Cost is the mean time of all timed runs whether they passed or failed, a check that
+ * always fails still costs its time every run. Counts are halved now and then so that
+ * recent runs weigh more than old ones.
+ * Not thread safe, a check is measured by one thread at a time.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class FailureCost {
+
+    /**Number of runs when all counts are halved*/
+    private static final long DECAY_LIMIT = 1 << 12;
+
+    private long runs;
+    private long failures;
+    private long timedRuns;
+    private long nanos;
+
+    /**
+     * Record a run that was not timed
+     * @param failed true if check failed
+     */
+    void record(boolean failed) {
+        runs++;
+        if(failed) {
+            failures++;
+        }
+        if(runs >= DECAY_LIMIT) {
+            runs /= 2;
+            failures /= 2;
+            timedRuns /= 2;
+            nanos /= 2;
+        }
+    }
+
+    /**
+     * Record a timed run
+     * @param nanos time of run in nanoseconds
+     * @param failed true if check failed
+     */
+    void record(long nanos, boolean failed) {
+        this.timedRuns++;
+        this.nanos += nanos;
+        record(failed);
+    }
+
+    /**
+     * Expected cost of finding a failure with this check, a check that has not been timed costs nothing
+     * and one that never failed is treated as if it failed once, so new checks are tried first
+     * @return mean cost divided by failure rate, lower is run first
+     */
+    double rank() {
+        double cost = timedRuns == 0 ? 0 : (double) nanos / timedRuns;
+        double failureRate = (failures + 1.0) / (runs + 2.0);
+        return cost / failureRate;
+    }
+
+    @Override
+    public String toString() {
+        return "runs=" + runs + " failures=" + failures + " rank=" + rank();
+    }
+}
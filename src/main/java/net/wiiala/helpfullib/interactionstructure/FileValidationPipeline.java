@@ -0,0 +1,321 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class validates every record of a file against a set of rules and aborts as soon
+ * as one record breaks a rule, e.g. when a system critical file must follow a structure.
+ * Records are lines of UTF-8 text, without their line separator, and are tested
+ * with the same rules that are used on return values of methods.
+ *
+ * The file is memory-mapped and split into chunks of whole records that are validated
+ * in parallel, so large files are validated at the speed they can be read.
+ * When a worker finds a broken rule all workers stop, the reported record is then the
+ * first one found and not necessarily the first broken record of the file.
+ * An exception or error of a worker stops all workers the same way and is thrown.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class FileValidationPipeline {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+    private static final int SCAN_WINDOW = 64 << 10;
+    private static final int COUNT_WINDOW = 16 << 20;
+
+    private final Path file;
+    private final List<OperationValidBehavior> rules = new ArrayList();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create pipeline of a file
+     * @param file file to validate
+     */
+    public FileValidationPipeline(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Add rule that every record must follow
+     * @param rule rule to follow, VOID rules only apply to methods and can't be used
+     */
+    public void addRules(OperationValidBehavior rule) {
+        if(rule.getComparision() == OperationValidBehavior.COMPARISION.VOID) {
+            throw new IllegalArgumentException("VOID rule can only be used on methods");
+        }
+        rules.add(rule);
+    }
+
+    /**
+     * Set size in bytes of chunks file is split into, a chunk is extended to the end of its last record
+     * @param chunkSize bytes per chunk, 64 MB by default
+     */
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1 but was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Set number of chunks that are validated at the same time
+     * @param parallelism number of workers, number of processors by default
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1 but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Validate file on threads that are created for this validation
+     * @return number of validated records
+     * @throws IOException when file can't be read
+     * @throws RecordValidationException when a record breaks a rule
+     * @throws InterruptedException when waiting thread is interrupted, workers are then stopped
+     */
+    public long validate() throws IOException, RecordValidationException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            return validate(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Validate file on executor
+     * @param executor executor to run workers on
+     * @return number of validated records
+     * @throws IOException when file can't be read
+     * @throws RecordValidationException when a record breaks a rule
+     * @throws InterruptedException when waiting thread is interrupted, workers are then stopped
+     */
+    public long validate(Executor executor) throws IOException, RecordValidationException, InterruptedException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Run run = new Run(channel, chunksOf(channel));
+            run.start(executor);
+            return run.await();
+        }
+    }
+
+    /**
+     * Split file into chunks that start at the start of a record
+     * @return start of every chunk followed by size of file
+     */
+    private long[] chunksOf(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> starts = new ArrayList();
+        starts.add(0L);
+        long position = chunkSize;
+        while(position < size) {
+            long start = nextRecord(channel, position, size);
+            if(start >= size) {
+                break;
+            }
+            starts.add(start);
+            position = start + chunkSize;
+        }
+        starts.add(size);
+
+        long[] chunks = new long[starts.size()];
+        for(int i = 0; i < chunks.length; i++) {
+            chunks[i] = starts.get(i);
+            if(i > 0 && chunks[i] - chunks[i - 1] > Integer.MAX_VALUE) {
+                throw new IOException("Record at byte " + chunks[i - 1] + " is too large to be mapped");
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Find start of first record at or after position
+     */
+    private static long nextRecord(FileChannel channel, long position, long size) throws IOException {
+        long from = position - 1;
+        while(from < size) {
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(SCAN_WINDOW, size - from));
+            for(int i = 0; i < window.limit(); i++) {
+                if(window.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            from += window.limit();
+        }
+        return size;
+    }
+
+    /**
+     * Count lines before offset, only done to report a broken record
+     */
+    private static long lineOf(FileChannel channel, long offset) throws IOException {
+        long line = 1;
+        for(long from = 0; from < offset; from += COUNT_WINDOW) {
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(COUNT_WINDOW, offset - from));
+            for(int i = 0; i < window.limit(); i++) {
+                if(window.get(i) == '\n') {
+                    line++;
+                }
+            }
+        }
+        return line;
+    }
+
+    /**
+     * State of one validation, workers take chunks until all are done or one fails
+     */
+    private final class Run {
+        private final FileChannel channel;
+        private final long[] chunks;
+        private final OperationValidBehavior[] checks = rules.toArray(new OperationValidBehavior[0]);
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicLong records = new AtomicLong();
+        private final CountDownLatch done;
+        private final int workers;
+
+        /**First failure, workers stop when it is set*/
+        private volatile Throwable failure;
+        private volatile boolean stopped;
+
+        Run(FileChannel channel, long[] chunks) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.workers = Math.max(1, Math.min(parallelism, chunks.length - 1));
+            this.done = new CountDownLatch(workers);
+        }
+
+        void start(Executor executor) {
+            for(int i = 0; i < workers; i++) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            work();
+                        }
+                    });
+                } catch(RuntimeException e) {
+                    fail(e);
+                    done.countDown();
+                }
+            }
+        }
+
+        long await() throws IOException, RecordValidationException, InterruptedException {
+            try {
+                done.await();
+            } catch(InterruptedException e) {
+                stopped = true;
+                throw e;
+            }
+
+            Throwable e = failure;
+            if(e instanceof Broken) {
+                Broken broken = (Broken) e;
+                throw new RecordValidationException(broken.getMessage(), lineOf(channel, broken.offset), broken.offset, broken.record);
+            }
+            if(e instanceof IOException) {
+                throw (IOException) e;
+            }
+            if(e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if(e instanceof Error) {
+                throw (Error) e;
+            }
+            return records.get();
+        }
+
+        private void fail(Throwable e) {
+            synchronized(this) {
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+            stopped = true;
+        }
+
+        private void work() {
+            try {
+                byte[] scratch = new byte[256];
+                int chunk;
+                while(!stopped && (chunk = nextChunk.getAndIncrement()) < chunks.length - 1) {
+                    scratch = validate(chunks[chunk], chunks[chunk + 1], scratch);
+                }
+            } catch(Throwable e) {
+                //Errors too, such as a pattern that overflows the stack on a long record
+                fail(e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Validate all records of one chunk
+         * @return scratch space, grown if a record did not fit
+         */
+        private byte[] validate(long start, long end, byte[] scratch) throws IOException {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int limit = buffer.limit();
+            int recordStart = 0;
+            long count = 0;
+            for(int i = 0; i <= limit && !stopped; i++) {
+                if(i < limit && buffer.get(i) != '\n') {
+                    continue;
+                }
+                //Last record of file may lack line separator
+                if(i == limit && recordStart == limit) {
+                    break;
+                }
+
+                int recordEnd = i > recordStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                int length = recordEnd - recordStart;
+                if(length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                for(int j = 0; j < length; j++) {
+                    scratch[j] = buffer.get(recordStart + j);
+                }
+                String record = new String(scratch, 0, length, StandardCharsets.UTF_8);
+
+                for(OperationValidBehavior rule : checks) {
+                    if(!rule.accepts(record)) {
+                        fail(new Broken(rule.failureOf(record), start + recordStart, record));
+                        return scratch;
+                    }
+                }
+                count++;
+                recordStart = i + 1;
+            }
+            records.addAndGet(count);
+            return scratch;
+        }
+    }
+
+    /**
+     * A broken rule found by a worker, turned into a RecordValidationException
+     * with line number when all workers has stopped
+     */
+    private static final class Broken extends Exception {
+        private final long offset;
+        private final String record;
+
+        Broken(String message, long offset, String record) {
+            super(message, null, false, false);
+            this.offset = offset;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a batch ahead of time, for which a plan builder is generated at compile time
+ * by {@link net.wiiala.helpfullib.interactionstructure.processor.InteractionPlanProcessor}.
+ *
+ * Every step names a class, a method and its exact parameter types, so a method that
+ * does not exist or a dependency on a step that does not exist is a compile error.
+ * The generated builder has one typed method per step that takes the instance and
+ * parameters of the step, and builds an {@link OperationPlan} whose methods are called
+ * directly without reflection, e.g. for fast startup or ahead of time compilation.
+ * <pre>
+ * {@literal @}InteractionPlan({
+ *     {@literal @}InteractionPlan.Step(id = "stock", type = Inventory.class, method = "count", parameters = long.class),
+ *     {@literal @}InteractionPlan.Step(id = "price", type = Pricing.class, method = "price", parameters = long.class, dependsOn = "stock")
+ * })
+ * class Checkout {}
+ *
+ * OperationPlan plan = new CheckoutPlan().stock(inventory, 42L).price(pricing, 42L).build();
+ * </pre>
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface InteractionPlan {
+
+    /**
+     * Steps of plan, steps are invoked in this order unless a step depends on a later step
+     * @return steps
+     */
+    Step[] value();
+
+    /**
+     * Simple name of generated class, by default name of annotated class followed by Plan
+     * @return name of generated class
+     */
+    String name() default "";
+
+    /**
+     * One method call of a plan
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target({})
+    @interface Step {
+
+        /**
+         * Identifier of step, used as name of its builder method and as identifier of its return value
+         * @return identifier that is a valid Java name
+         */
+        String id();
+
+        /**
+         * Class that declares or inherits method
+         * @return class of instance
+         */
+        Class<?> type();
+
+        /**
+         * Name of method
+         * @return method name
+         */
+        String method();
+
+        /**
+         * Exact parameter types of method
+         * @return parameter types in order
+         */
+        Class<?>[] parameters() default {};
+
+        /**
+         * Identifiers of steps that must have been invoked before this step
+         * @return identifiers of dependencies
+         */
+        String[] dependsOn() default {};
+    }
+}
@@ -0,0 +1,34 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+/**
+ * Metrics listener that emits every invocation and every broken rule as a
+ * Java Flight Recorder event, so slow and failing operations show up in recordings
+ * next to the rest of the application.
+ *
+ * Flight Recorder events are only available from Java 11, this version of the class is
+ * used on older versions and emits nothing. The multi-release jar holds the version
+ * that emits events.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class JfrOperationListener implements OperationMetricsListener {
+
+    /**
+     * Check if events are emitted
+     * @return true on Java 11 and later
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    @Override
+    public void invoked(OperationAction action, long nanos) {
+    }
+
+    @Override
+    public void invocationFailed(OperationAction action, long nanos, Exception failure) {
+    }
+
+    @Override
+    public void ruleBroken(OperationAction action, OperationValidBehavior rule) {
+    }
+}
@@ -0,0 +1,162 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in the style of an HDR histogram: values are counted in buckets
+ * that grow exponentially, each split into 16 linear sub buckets, so any value from
+ * zero to Long.MAX_VALUE is kept with an error of at most 1/16 in less than 1000 counters.
+ *
+ * Recording a value is a few bit operations and one atomic increment, several threads
+ * can record at the same time without locks.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class LatencyHistogram {
+
+    /**Number of significant bits kept of every value*/
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one value, negative values are recorded as zero
+     * @param value value to record, e.g. nanoseconds of an invocation
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Get number of recorded values
+     * @return count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get highest recorded value
+     * @return highest value or zero if no value is recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get mean of recorded values
+     * @return mean or zero if no value is recorded
+     */
+    public double getMean() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : (double) total.get() / recorded;
+    }
+
+    /**
+     * Get value that percentile of all recorded values are less than or equal to,
+     * within the precision of the histogram
+     * @param percentile percentile from 0 to 100
+     * @return highest value of bucket where percentile is reached, never more than max
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be within 0 and 100 but was " + percentile);
+        }
+        long recorded = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            recorded += counts.get(i);
+        }
+        if(recorded == 0) {
+            return 0;
+        }
+
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= wanted) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Add all values recorded by another histogram to this one
+     * @param other histogram to add, values it records at the same time may be partly added
+     */
+    void add(LatencyHistogram other) {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            long counted = other.counts.get(i);
+            if(counted != 0) {
+                counts.addAndGet(i, counted);
+            }
+        }
+        count.addAndGet(other.count.get());
+        total.addAndGet(other.total.get());
+
+        long value = other.max.get();
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Remove all recorded values, values recorded at the same time may be partly kept
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Bucket of a value, values below the sub bucket count have one bucket each and
+     * larger values keep their highest significant bits
+     */
+    static int indexOf(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    /**
+     * Highest value that is counted in bucket
+     */
+    static long highestValueOf(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long top = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d",
+                             getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(99), getMax());
+    }
+}
@@ -0,0 +1,153 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import net.wiiala.helpfullib.tuple.Overloads;
+
+/**
+ * A resolved method and a method handle that takes the instance and all arguments
+ * as an array, so calling the method does no reflective lookup and allocates nothing
+ * but what the method itself returns.
+ *
+ * Methods that this library is not allowed to reach through a method handle are
+ * called through {@link Method#invoke} instead. Invokers are created and shared by
+ * {@link MethodResolver} and are immutable.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class MethodInvoker implements OperationInvoker {
+
+    private final Class<?> owner;
+    private final Method method;
+    private final Class<?>[] argumentClasses;
+    private final Class<?>[] parameterTypes;
+    private final boolean isStatic;
+    private final MethodHandle handle;
+
+    /**
+     * @param owner class method was resolved for
+     * @param method resolved method
+     * @param argumentClasses classes of arguments method was resolved for, null for null arguments
+     */
+    MethodInvoker(Class<?> owner, Method method, Class<?>[] argumentClasses) {
+        this.owner = owner;
+        this.method = method;
+        this.argumentClasses = argumentClasses;
+        this.parameterTypes = method.getParameterTypes();
+        this.isStatic = Modifier.isStatic(method.getModifiers());
+        this.handle = handleOf(method);
+    }
+
+    /**
+     * Creates a handle of type (Object, Object[])Object or null if method is not accessible
+     */
+    private static MethodHandle handleOf(Method method) {
+        int count = method.getParameterTypes().length;
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+        } catch(IllegalAccessException e) {
+            return null;
+        }
+        if(Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle.asType(MethodType.genericMethodType(count + 1))
+                     .asSpreader(Object[].class, count);
+    }
+
+    /**
+     * Get classes of arguments
+     * @param arguments values to get classes of
+     * @return array of classes with null for null values
+     */
+    static Class<?>[] classesOf(Object[] arguments) {
+        Class<?>[] classes = new Class<?>[arguments.length];
+        for(int i = 0; i < arguments.length; i++) {
+            classes[i] = arguments[i] == null ? null : arguments[i].getClass();
+        }
+        return classes;
+    }
+
+    /**
+     * Checks without allocating if this invoker was resolved for the same class,
+     * method name and argument classes
+     * @param type class of instance
+     * @param methodName name of method
+     * @param arguments values method will be called with
+     * @return true if this invoker can be used
+     */
+    boolean accepts(Class<?> type, String methodName, Object[] arguments) {
+        if(type != owner || arguments.length != argumentClasses.length || !method.getName().equals(methodName)) {
+            return false;
+        }
+        for(int i = 0; i < arguments.length; i++) {
+            Object value = arguments[i];
+            if((value == null ? null : value.getClass()) != argumentClasses[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get class method was resolved for
+     * @return class of instances invoker is meant for
+     */
+    Class<?> getOwner() {
+        return owner;
+    }
+
+    /**
+     * Get resolved method
+     * @return method that is called
+     */
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Call method, with the same checks of instance and arguments as {@link Method#invoke}
+     * @param instance object to call method on, ignored for static methods
+     * @param arguments values to call method with
+     * @return return value of method, null for void methods
+     * @throws IllegalAccessException when method is not accessible
+     * @throws InvocationTargetException when method throws an exception, errors of method are thrown unwrapped
+     * @throws IllegalArgumentException when instance or arguments don't fit method
+     * @throws NullPointerException when instance of a method that is not static is null
+     */
+    @Override
+    public Object invoke(Object instance, Object[] arguments) throws IllegalAccessException, InvocationTargetException {
+        if(handle == null) {
+            try {
+                return method.invoke(instance, arguments);
+            } catch(InvocationTargetException e) {
+                //Errors are thrown as they are, the same as through the handle
+                if(e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        //Checked before the call so that anything thrown by the handle comes from the method itself
+        if(!isStatic && !method.getDeclaringClass().isInstance(instance)) {
+            if(instance == null) {
+                throw new NullPointerException("Method " + method.getName() + " is not static and needs an instance");
+            }
+            throw new IllegalArgumentException("Instance of " + instance.getClass().getName() + " don't declare method " + method);
+        }
+        if(!Overloads.accepts(parameterTypes, arguments)) {
+            throw new IllegalArgumentException("Arguments don't fit method " + method);
+        }
+        try {
+            return (Object) handle.invokeExact(instance, arguments);
+        } catch(Error e) {
+            throw e;
+        } catch(Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+}
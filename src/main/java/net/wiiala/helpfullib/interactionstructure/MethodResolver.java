@@ -0,0 +1,118 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.wiiala.helpfullib.tuple.Overloads;
+
+/**
+ * This class finds the method of a class that accepts a set of arguments and keeps
+ * every resolved method as a {@link MethodInvoker} in a cache per class, so a method
+ * is only looked up through reflection the first time it is called with arguments of
+ * certain classes.
+ *
+ * Overloads are resolved by {@link Overloads} like the compiler would for the argument
+ * classes, and a call that accepts several methods of which none is most specific is
+ * reported as ambiguous.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class MethodResolver {
+
+    /**Resolved methods of each class, kept with the class so class loaders can be unloaded*/
+    private static final ClassValue<ConcurrentMap<Key, MethodInvoker>> CACHE = new ClassValue<ConcurrentMap<Key, MethodInvoker>>() {
+        @Override
+        protected ConcurrentMap<Key, MethodInvoker> computeValue(Class<?> type) {
+            return new ConcurrentHashMap();
+        }
+    };
+
+    private MethodResolver() {
+    }
+
+    /**
+     * Get invoker of method on class that accepts arguments
+     * @param type class to find method in
+     * @param methodName name of method
+     * @param arguments values method will be called with, array is not kept
+     * @return a shared invoker
+     * @throws NoSuchMethodException when no method of that name accepts arguments
+     */
+    static MethodInvoker resolve(Class<?> type, String methodName, Object[] arguments) throws NoSuchMethodException {
+        ConcurrentMap<Key, MethodInvoker> methods = CACHE.get(type);
+        Key key = new Key(methodName, MethodInvoker.classesOf(arguments));
+        MethodInvoker invoker = methods.get(key);
+
+        if(invoker == null) {
+            invoker = new MethodInvoker(type, find(type, methodName, key.argumentClasses), key.argumentClasses);
+            MethodInvoker previous = methods.putIfAbsent(key, invoker);
+            if(previous != null) {
+                invoker = previous;
+            }
+        }
+        return invoker;
+    }
+
+    /**
+     * Find the most specific method that accepts arguments among public methods
+     * and methods declared in class or any of its super classes
+     */
+    private static Method find(Class<?> type, String methodName, Class<?>[] argumentClasses) throws NoSuchMethodException {
+        List<Method> all = new ArrayList(Arrays.asList(type.getMethods()));
+        for(Class<?> current = type; current != null; current = current.getSuperclass()) {
+            all.addAll(Arrays.asList(current.getDeclaredMethods()));
+        }
+
+        //Overriding methods are found before the method they override and are kept
+        List<Method> candidates = new ArrayList();
+        List<Class<?>[]> parameterTypes = new ArrayList();
+        for(Method candidate : all) {
+            if(candidate.getName().equals(methodName) && !candidate.isBridge()) {
+                candidates.add(candidate);
+                parameterTypes.add(candidate.getParameterTypes());
+            }
+        }
+
+        int found;
+        try {
+            found = Overloads.mostSpecific(parameterTypes, argumentClasses);
+        } catch(IllegalArgumentException e) {
+            throw new NoSuchMethodException("Method " + methodName + " of " + type.getName() + " is ambiguous: " + e.getMessage());
+        }
+        if(found < 0) {
+            throw new NoSuchMethodException("No method " + methodName + " of " + type.getName() + " accepts " + Arrays.toString(argumentClasses));
+        }
+        return candidates.get(found);
+    }
+
+    /**
+     * Cache key of a method name and the classes of the arguments it was called with
+     */
+    private static final class Key {
+        private final String methodName;
+        private final Class<?>[] argumentClasses;
+        private final int hash;
+
+        Key(String methodName, Class<?>[] argumentClasses) {
+            this.methodName = methodName;
+            this.argumentClasses = argumentClasses;
+            this.hash = 31 * methodName.hashCode() + Arrays.hashCode(argumentClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return methodName.equals(other.methodName) && Arrays.equals(argumentClasses, other.argumentClasses);
+        }
+    }
+}
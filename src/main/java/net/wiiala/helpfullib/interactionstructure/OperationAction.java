@@ -4,24 +4,44 @@ package net.wiiala.helpfullib.interactionstructure;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class helps with storing a operation to perform within a class
  * helpful to have if we would like a batch of defined operations in a 
- * structured matter
+ * structured matter.
+ * 
+ * Methods are resolved once per class, method name and argument classes and
+ * called through a method handle, so invoking an action again does no reflective lookup.
+ * Overloads with primitive or super type parameters are resolved as the compiler would.
  * @author Gustav Wiiala
  * @param <T>
  */
 public class OperationAction <T> {
     
+    /**Listener of all invocations or null when metrics are disabled*/
+    private static volatile OperationMetricsListener metricsListener;
+    
     private T instance;
     private Class classType;
     private Method method;
-    private ArrayList<Object> parameters;
+    private MethodInvoker invoker;
+    private Object[] parameters;
     private List<OperationValidBehavior> rules;
+    private final List<OperationAction> dependencies;
+    private String identifier;
+    private boolean idempotent;
+    private boolean critical = true;
+    private long timeout;
+    private boolean adaptiveRuleOrder;
+    private AdaptiveRuleOrder ruleOrder;
+    
+    /**Cost and failure rate of action when run by a batch with adaptive order*/
+    private FailureCost cost;
     
     /**
      * Constructor that accepts an instanced object to work with
@@ -30,8 +50,9 @@ public class OperationAction <T> {
     public OperationAction(T instance){
         this.instance = instance;
         this.classType = instance.getClass();
-        this.parameters = new ArrayList();
+        this.parameters = new Object[0];
         this.rules = new ArrayList();
+        this.dependencies = new ArrayList();
     }
     
     /**
@@ -99,6 +120,171 @@ public class OperationAction <T> {
         this.rules  = rules;
     }
     
+    /**
+     * Add actions that must have been invoked before this action within a batch
+     * @param actions actions this action depends on
+     */
+    public void addDependency(OperationAction... actions){
+        for(OperationAction action : actions){
+            if(action == null){
+                throw new IllegalArgumentException("Dependency can't be null");
+            }
+            this.dependencies.add(action);
+        }
+    }
+    
+    /**
+     * Get actions that must have been invoked before this action within a batch
+     * @return unmodifiable list of dependencies
+     */
+    public List<OperationAction> getDependencies(){
+        return Collections.unmodifiableList(dependencies);
+    }
+    
+    boolean hasDependencies(){
+        return !dependencies.isEmpty();
+    }
+    
+    /**
+     * Set identifier that return value of action is kept under in result tuples of plans
+     * @param identifier unique identifier within a batch or null to not keep return value
+     * @see OperationPlan#runToTuple(java.lang.Class) 
+     */
+    public void setIdentifier(String identifier){
+        this.identifier = identifier;
+    }
+    
+    /**
+     * Get identifier that return value of action is kept under
+     * @return identifier or null if return value is not kept
+     */
+    public String getIdentifier(){
+        return identifier;
+    }
+    
+    /**
+     * Mark method of action as idempotent, invoking it again on an equal instance with
+     * equal parameters returns an equal value and changes nothing. Batches with a result
+     * cache then serve the action from cache
+     * @param idempotent true if action may be served from cache
+     * @see OperationBatch#setResultCache(OperationResultCache) 
+     */
+    public void setIdempotent(boolean idempotent){
+        this.idempotent = idempotent;
+    }
+    
+    /**
+     * Tell if action may be served from a result cache
+     * @return true if action is idempotent
+     */
+    public boolean isIdempotent(){
+        return idempotent;
+    }
+    
+    /**
+     * Get method that is invoked
+     * @return method or null if no method is set
+     */
+    public Method getMethod(){
+        return method;
+    }
+    
+    /**
+     * Mark action as critical or not, a {@link DeadlineScheduler} drops actions that are not
+     * critical when the deadline of the batch has passed and a batch stops when a critical action fails
+     * @param critical false if batch can do without action, true by default
+     */
+    public void setCritical(boolean critical){
+        this.critical = critical;
+    }
+    
+    /**
+     * Tell if batch needs action
+     * @return true if action is critical
+     */
+    public boolean isCritical(){
+        return critical;
+    }
+    
+    /**
+     * Set longest time a {@link DeadlineScheduler} waits for action, 
+     * other ways of running action don't use timeout
+     * @param time longest time of invocation, zero for no timeout
+     * @param unit unit of time
+     */
+    public void setTimeout(long time, TimeUnit unit){
+        if(time < 0){
+            throw new IllegalArgumentException("Timeout can't be negative but was " + time);
+        }
+        this.timeout = unit.toNanos(time);
+    }
+    
+    /**
+     * Get longest time a {@link DeadlineScheduler} waits for action
+     * @param unit unit of returned time
+     * @return timeout or zero if action has no timeout
+     */
+    public long getTimeout(TimeUnit unit){
+        return unit.convert(timeout, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Test rules in an order that adapts to how they behave, rules that are cheap and
+     * often broken are then tested first. When several rules are broken the rule
+     * that is reported may change as rules are reordered
+     * @param adaptive true to reorder rules, false to test them in the order they were added
+     */
+    public void setAdaptiveRuleOrder(boolean adaptive){
+        this.adaptiveRuleOrder = adaptive;
+        this.ruleOrder = null;
+    }
+    
+    /**
+     * Tell if rules are tested in an adaptive order
+     * @return true if rules are reordered
+     */
+    public boolean isAdaptiveRuleOrder(){
+        return adaptiveRuleOrder;
+    }
+    
+    /**
+     * Get rules in the order they are tested
+     * @return rules in current order
+     */
+    OperationValidBehavior[] getRuleOrder(){
+        if(adaptiveRuleOrder && ruleOrder != null && ruleOrder.isOf(rules)){
+            return ruleOrder.getRules();
+        }
+        return rules.toArray(new OperationValidBehavior[0]);
+    }
+    
+    /**
+     * Get cost and failure rate of action as measured by batches with adaptive order
+     */
+    FailureCost getCost(){
+        if(cost == null){
+            cost = new FailureCost();
+        }
+        return cost;
+    }
+    
+    /**
+     * Sets listener that is told about every invocation of every action, without a
+     * listener invocations are not measured at all
+     * @param listener listener or null to disable metrics
+     */
+    public static void setMetricsListener(OperationMetricsListener listener){
+        metricsListener = listener;
+    }
+    
+    /**
+     * Get listener that is told about every invocation
+     * @return listener or null if metrics are disabled
+     */
+    public static OperationMetricsListener getMetricsListener(){
+        return metricsListener;
+    }
+    
     /**
      * Sets method/operation that will be called with next invokeMethod call
      * @param methodName 
@@ -117,13 +303,9 @@ public class OperationAction <T> {
      * @throws NoSuchMethodException 
      */
     public void setMethod(String methodName) throws NoSuchMethodException{
-        //figure out class type of input parameters
-        Collection<Class<?>> classes = new ArrayList();
-        for(Object obj : parameters.toArray()){
-            classes.add(obj.getClass());
-        }
-       //Assign the exact method/operation to use in class
-       this.method = classType.getDeclaredMethod(methodName, classes.toArray(new Class[0]));
+       //Most specific method that accepts parameters, cached per class
+       this.invoker = MethodResolver.resolve(classType, methodName, parameters);
+       this.method = invoker.getMethod();
     }
     
     /**
@@ -131,8 +313,7 @@ public class OperationAction <T> {
      * @param parameters 
      */
     public void setParameters(Object... parameters){
-        this.parameters.clear();//removes element i list
-        this.parameters.addAll(Arrays.asList(parameters));
+        this.parameters = parameters.clone();
     }
     
     /**
@@ -146,7 +327,75 @@ public class OperationAction <T> {
     
     
     /**
-     * Invoke method on specified class and continue to use previous class 
+     * Invoke method of this action with its parameters and rules on every instance,
+     * the action itself is not changed. Method is resolved once for every class
+     * of instances and failures don't stop the rest of the instances
+     * @param instances instances to invoke method on
+     * @return return value or failure of every instance
+     * @throws IllegalStateException when no method is set
+     */
+    public BulkOperationResult invokeAll(T[] instances){
+        return bulkOf(instances, instances.length).run();
+    }
+    
+    /**
+     * Invoke method of this action with its parameters and rules on every instance
+     * @param instances instances to invoke method on
+     * @return return value or failure of every instance in iteration order
+     * @throws IllegalStateException when no method is set
+     * @see #invokeAll(Object[]) 
+     */
+    public BulkOperationResult invokeAll(Collection<? extends T> instances){
+        Object[] array = instances.toArray();
+        return bulkOf(array, array.length).run();
+    }
+    
+    /**
+     * Invoke method of this action with its parameters and rules on every instance
+     * in parallel, every chunk of instances is invoked by one task on executor
+     * @param instances instances to invoke method on
+     * @param executor executor to run chunks on
+     * @param chunkSize number of instances per task
+     * @return return value or failure of every instance
+     * @throws InterruptedException when waiting thread is interrupted
+     * @throws IllegalStateException when no method is set
+     * @see #invokeAll(Object[]) 
+     */
+    public BulkOperationResult invokeAll(T[] instances, Executor executor, int chunkSize) throws InterruptedException{
+        return bulkOf(instances, chunkSize).run(executor);
+    }
+    
+    /**
+     * Take an immutable copy of instance, method, parameters and rules of action
+     * @throws IllegalStateException when no method is set
+     */
+    PlannedOperation plan(){
+        if(invoker == null){
+            throw new IllegalStateException("No method is set");
+        }
+        MethodInvoker current = invoker;
+        if(current.getOwner() != classType){
+            try{
+                current = MethodResolver.resolve(classType, method.getName(), parameters);
+            }catch(NoSuchMethodException e){
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        return new PlannedOperation(this, identifier, instance, current, parameters.clone(),
+                                    rules.toArray(new OperationValidBehavior[0]));
+    }
+    
+    private BulkInvocation bulkOf(Object[] instances, int chunkSize){
+        if(invoker == null){
+            throw new IllegalStateException("No method is set");
+        }
+        return new BulkInvocation(this, invoker, parameters, rules, instances, chunkSize);
+    }
+    
+    /**
+     * Invoke method on a new instance of specified class with rules of this action, 
+     * the action itself is not changed and continues to use previous class.
+     * The invocation is not told to the metrics listener
      * @param classType
      * @param methodName
      * @param parameters
@@ -166,17 +415,18 @@ public class OperationAction <T> {
                                 InstantiationException,
                                 MethodBehaviourException{
       
-        T ins = this.instance;  
-        setInstance(classType.newInstance());
-        Object returnObject = invokeMethod(methodName, parameters);
-        setInstance(ins);
-        return returnObject;
+        MethodInvoker resolved = MethodResolver.resolve(classType, methodName, parameters);
+        PlannedOperation operation = new PlannedOperation(null, null, classType.newInstance(), resolved,
+                                                          parameters.clone(),
+                                                          rules.toArray(new OperationValidBehavior[0]));
+        return operation.invoke();
     }
     
     /**
-     * Invoke method with or without parameters to be used
+     * Invoke method with or without parameters to be used,
+     * method is only resolved again if name or classes of parameters has changed
      * @param methodName
-     * @param parameters
+     * @param parameters array is kept as parameters of this action
      * @return 
      * @throws NoSuchMethodException 
      * @throws java.lang.IllegalAccessException 
@@ -188,8 +438,10 @@ public class OperationAction <T> {
                                                             , IllegalAccessException, 
                                                             InvocationTargetException,
                                                             MethodBehaviourException {
-        this.setParameters(parameters);
-        this.setMethod(methodName);
+        this.parameters = parameters;
+        if(invoker == null || !invoker.accepts(classType, methodName, parameters)){
+            this.setMethod(methodName);
+        }
         return this.invokeMethod();
     }
     
@@ -206,11 +458,93 @@ public class OperationAction <T> {
                                         InvocationTargetException,
                                         MethodBehaviourException{
         
-        Object returnValue =  this.method.invoke(instance, parameters.toArray());
-        for(OperationValidBehavior rule : rules){
-            rule.validateMethod(method, returnValue);
+        if(invoker.getOwner() != classType){
+            //Instance has been changed to another class since method was set
+            try{
+                this.setMethod(method.getName());
+            }catch(NoSuchMethodException e){
+                throw new IllegalArgumentException(e.getMessage());
+            }
         }
+        OperationMetricsListener listener = metricsListener;
+        if(listener != null){
+            return invokeMeasured(listener);
+        }
+        Object returnValue =  invoker.invoke(instance, parameters);
+        validate(returnValue, null);
         return returnValue;
     }
     
+    /**
+     * Invoke operation or, if it is idempotent, take its return value from cache.
+     * Rules are tested on cached values as well, a value that breaks a rule is never cached
+     * @param cache cache of return values or null to always invoke
+     */
+    Object invokeMethod(OperationResultCache cache) throws IllegalAccessException,
+                                                         IllegalArgumentException,
+                                                         InvocationTargetException,
+                                                         MethodBehaviourException{
+        if(cache == null || !idempotent || invoker.getOwner() != classType){
+            return invokeMethod();
+        }
+        OperationResultCache.CachedValue cached = cache.get(instance, method, parameters);
+        if(cached == null){
+            Object returnValue = invokeMethod();
+            cache.put(instance, method, parameters, returnValue);
+            return returnValue;
+        }
+        
+        validate(cached.getValue(), metricsListener);
+        return cached.getValue();
+    }
+    
+    /**
+     * Invoke operation and tell listener how long it took and which rule it broke
+     */
+    private Object invokeMeasured(OperationMetricsListener listener) throws IllegalAccessException,
+                                                                            InvocationTargetException,
+                                                                            MethodBehaviourException{
+        long start = System.nanoTime();
+        Object returnValue;
+        try{
+            returnValue =  invoker.invoke(instance, parameters);
+        }catch(IllegalAccessException | InvocationTargetException | RuntimeException e){
+            listener.invocationFailed(this, System.nanoTime() - start, e);
+            throw e;
+        }
+        listener.invoked(this, System.nanoTime() - start);
+        validate(returnValue, listener);
+        return returnValue;
+    }
+    
+    /**
+     * Test return value against rules and tell listener which rule is broken
+     * @param listener listener or null
+     */
+    private void validate(Object returnValue, OperationMetricsListener listener) throws MethodBehaviourException{
+        if(adaptiveRuleOrder){
+            if(ruleOrder == null || !ruleOrder.isOf(rules)){
+                ruleOrder = new AdaptiveRuleOrder(rules);
+            }
+            OperationValidBehavior broken = ruleOrder.firstBroken(method, returnValue);
+            if(broken != null){
+                if(listener != null){
+                    listener.ruleBroken(this, broken);
+                }
+                broken.validateMethod(method, returnValue);
+            }
+            return;
+        }
+        for(OperationValidBehavior rule : rules){
+            try{
+                rule.validateMethod(method, returnValue);
+            }catch(MethodBehaviourException e){
+                if(listener != null){
+                    listener.ruleBroken(this, rule);
+                }
+                throw e;
+            }
+        }
+    }
+    
 }
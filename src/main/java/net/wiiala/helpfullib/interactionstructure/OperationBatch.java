@@ -1,8 +1,15 @@
 package net.wiiala.helpfullib.interactionstructure;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import net.wiiala.helpfullib.tuple.Tuple;
 
 
 /**
@@ -12,11 +19,23 @@ import java.util.LinkedList;
  * this library to handle, 
  * probably by throwing an exception to stop the rest of execution, this class
  * is only suitable for reading information and not to update information as
- * there is no transaction
+ * there is no transaction.
+ * 
+ * Actions can depend on other actions of the batch, an action is then always
+ * invoked after the actions it depends on. Batches of independent actions can be
+ * run in parallel where each action is started as soon as its dependencies are done.
+ * Actions marked as idempotent can be served from a result cache instead of being invoked.
  * @author Gustav Wiiala
  */
 public class OperationBatch extends LinkedList<OperationAction> implements InteractionStructure {
 
+    /**Pool used by parallel runs without an executor, created when first needed*/
+    private static final class DefaultPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+    
+    private OperationResultCache resultCache;
+    private boolean adaptiveOrder;
    
     /**
      * Adds one or several class operations to perform
@@ -29,17 +48,191 @@ public class OperationBatch extends LinkedList<OperationAction> implements Inter
     }
     
     /**
-     * Executes operation in correct order
+     * Set cache that idempotent actions are served from when batch is run,
+     * the same cache can be used by several batches
+     * @param resultCache cache of return values or null to always invoke actions
+     * @see OperationAction#setIdempotent(boolean) 
+     */
+    public void setResultCache(OperationResultCache resultCache){
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * Get cache that idempotent actions are served from
+     * @return cache or null if actions are always invoked
+     */
+    public OperationResultCache getResultCache(){
+        return resultCache;
+    }
+    
+    /**
+     * Let run() measure cost and failure rate of every action and invoke actions that
+     * are cheap and often fail first, so a failing batch fails as soon as possible.
+     * Actions are still invoked after the actions they depend on
+     * @param adaptiveOrder true to order actions by cost, false to keep batch order
+     * @see OperationAction#setAdaptiveRuleOrder(boolean) 
+     */
+    public void setAdaptiveOrder(boolean adaptiveOrder){
+        this.adaptiveOrder = adaptiveOrder;
+    }
+    
+    /**
+     * Tell if run() orders actions by cost and failure rate
+     * @return true if order is adaptive
+     */
+    public boolean isAdaptiveOrder(){
+        return adaptiveOrder;
+    }
+    
+    /**
+     * Freeze batch into an immutable plan that can be run by several threads at the same time,
+     * changes to batch or its actions after that are not part of the plan
+     * @return plan of actions in batch
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @throws IllegalStateException when an action has no method
+     * @see OperationBatchBuilder
+     */
+    public OperationPlan toPlan(){
+        return new OperationPlan(this);
+    }
+    
+    /**
+     * Executes operations in correct order and collects return values of actions with
+     * an identifier into a tuple, the same as running a plan of the batch
+     * @param <R> class result represents
+     * @param resultClass class result represents or null
+     * @return tuple of return values
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @throws MethodBehaviourException first rule that is broken
+     * @see OperationPlan#runToTuple(java.lang.Class) 
+     */
+    public <R> Tuple<R> runToTuple(Class<R> resultClass) throws IllegalAccessException, InvocationTargetException,
+                                                              MethodBehaviourException{
+        return toPlan().runToTuple(resultClass);
+    }
+    
+    /**
+     * Executes operation in correct order, actions are taken in batch order
+     * unless an action depends on an action that comes later or order is adaptive
+     * @throws IllegalArgumentException when dependencies contain a cycle
      */
     @Override
     public void run() throws MethodBehaviourException{
+        //Cycles are thrown before any action is run
+        Collection<OperationAction> ordered = adaptiveOrder ? OperationGraph.orderByCost(this) : OperationGraph.order(this);
         try {  
-            for(OperationAction op : this){
-                op.invokeMethod(); 
+            if(adaptiveOrder){
+                runByCost(ordered);
+                return;
+            }
+            for(OperationAction op : ordered){
+                op.invokeMethod(resultCache); 
             }     
         } catch(IllegalAccessException | IllegalArgumentException 
                 | InvocationTargetException e){
                e.printStackTrace();
         }
     }
+    
+    /**
+     * Invoke actions ordered by cost and measure every invocation
+     * @param ordered actions of batch ordered by cost
+     */
+    private void runByCost(Collection<OperationAction> ordered) throws IllegalAccessException, InvocationTargetException, MethodBehaviourException{
+        for(OperationAction op : ordered){
+            long start = System.nanoTime();
+            boolean failed = true;
+            try{
+                op.invokeMethod(resultCache);
+                failed = false;
+            }finally{
+                op.getCost().record(System.nanoTime() - start, failed);
+            }
+        }
+    }
+    
+    /**
+     * Executes operations in correct order within deadlines of scheduler and actions,
+     * actions that are not critical are dropped when the deadline has passed
+     * @param scheduler scheduler with deadline and hedging of batch
+     * @return one result per operation in the order they were run
+     * @throws InterruptedException when waiting thread is interrupted
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @see DeadlineScheduler
+     */
+    public List<OperationResult> runWithDeadline(DeadlineScheduler scheduler) throws InterruptedException{
+        return scheduler.run(this);
+    }
+    
+    /**
+     * Executes operations in parallel on a shared fork-join pool
+     * @throws MethodBehaviourException first rule that is broken
+     * @throws InterruptedException when waiting thread is interrupted
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @see #runParallel(java.util.concurrent.Executor) 
+     */
+    public void runParallel() throws MethodBehaviourException, InterruptedException,
+                                     IllegalAccessException, InvocationTargetException{
+        runParallel(DefaultPool.POOL);
+    }
+    
+    /**
+     * Executes operations in parallel on executor, each operation as soon as the
+     * operations it depends on are done. The first broken rule stops the batch,
+     * operations that has not started are then never run and the exception is thrown
+     * when running operations are done. A method that can't be invoked stops the batch
+     * the same way and its exception is thrown.
+     * 
+     * Each operation is invoked by one thread at a time, an operation that is part of
+     * several batches must not be run by them at the same time.
+     * @param executor executor to run operations on
+     * @throws MethodBehaviourException first rule that is broken
+     * @throws InterruptedException when waiting thread is interrupted, operations that
+     *         has not started are then never run
+     * @throws IllegalArgumentException when dependencies contain a cycle or a method
+     *         don't accept its instance or arguments
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     */
+    public void runParallel(Executor executor) throws MethodBehaviourException, InterruptedException,
+                                                      IllegalAccessException, InvocationTargetException{
+        new OperationGraph(this, resultCache).run(executor);
+    }
+    
+    /**
+     * Executes operations in correct order on executor without waiting for them.
+     * Unlike run() an operation that can't be invoked completes the future exceptionally
+     * with its reflective exception instead of printing it.
+     * Operations are taken from the batch when this method is called, changes to
+     * the batch after that are not part of the run.
+     * @param executor executor to run batch on
+     * @return future of one result per operation in the order they were invoked
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @see BatchFuture
+     */
+    public BatchFuture runAsync(Executor executor){
+        BatchFuture future = new BatchFuture(new ArrayList(OperationGraph.order(this)), resultCache);
+        executor.execute(future);
+        return future;
+    }
+    
+    /**
+     * Executes operations in correct order on executor without waiting for them,
+     * a run that is not done within timeout completes with a TimeoutException
+     * @param executor executor to run batch on
+     * @param timeout longest time batch may take
+     * @param unit unit of timeout
+     * @return future of one result per operation in the order they were invoked
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @see #runAsync(java.util.concurrent.Executor) 
+     */
+    public BatchFuture runAsync(Executor executor, long timeout, TimeUnit unit){
+        BatchFuture future = new BatchFuture(new ArrayList(OperationGraph.order(this)), resultCache);
+        //Timed after the run is accepted so a rejected run leaves no timeout behind
+        executor.execute(future);
+        future.setTimeout(timeout, unit);
+        return future;
+    }
 }
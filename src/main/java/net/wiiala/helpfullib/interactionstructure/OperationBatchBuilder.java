@@ -0,0 +1,70 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Builder of batches that several threads can add actions to at the same time without
+ * locks, e.g. when actions are produced by many requests and run by another thread.
+ *
+ * The builder is frozen into an {@link OperationPlan} that is not changed by actions
+ * that are added after that. Actions that are added while a plan is built may or may not
+ * be part of it, actions added by one thread are always in the order that thread added them.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationBatchBuilder {
+
+    private final ConcurrentLinkedQueue<OperationAction> actions = new ConcurrentLinkedQueue();
+
+    /**
+     * Add one or several actions
+     * @param operations actions to add
+     * @return this builder
+     */
+    public OperationBatchBuilder add(OperationAction... operations) {
+        for(OperationAction operation : operations) {
+            if(operation == null) {
+                throw new IllegalArgumentException("Action can't be null");
+            }
+            actions.offer(operation);
+        }
+        return this;
+    }
+
+    /**
+     * Add all actions of a collection
+     * @param operations actions to add
+     * @return this builder
+     */
+    public OperationBatchBuilder addAll(Collection<? extends OperationAction> operations) {
+        return add(operations.toArray(new OperationAction[0]));
+    }
+
+    /**
+     * Get number of added actions, counts all actions so it is not for frequent use
+     * @return number of actions
+     */
+    public int size() {
+        return actions.size();
+    }
+
+    /**
+     * Remove all actions, plans that has been built are not changed
+     */
+    public void clear() {
+        actions.clear();
+    }
+
+    /**
+     * Freeze added actions into a plan, the builder can still be added to
+     * @return immutable plan of actions
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @throws IllegalStateException when an action has no method
+     */
+    public OperationPlan build() {
+        List<OperationAction> snapshot = new ArrayList(actions);
+        return new OperationPlan(snapshot);
+    }
+}
@@ -0,0 +1,367 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class orders the actions of a batch after their dependencies, either into
+ * one sequence or by running every action as soon as all actions it depends on are done.
+ *
+ * Each action of the batch is one node, an action added several times is one node
+ * per time and an action that depends on it waits for all of them.
+ * Dependencies on actions that are not in the batch are ignored.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class OperationGraph {
+
+    private final List<Node> nodes = new ArrayList();
+    private final OperationResultCache cache;
+
+    /**
+     * Build graph of actions
+     * @param actions actions of batch in batch order
+     */
+    OperationGraph(Collection<OperationAction> actions) {
+        this(actions, null);
+    }
+
+    /**
+     * Build graph of actions where idempotent actions are served from cache
+     * @param actions actions of batch in batch order
+     * @param cache cache of return values or null
+     */
+    OperationGraph(Collection<OperationAction> actions, OperationResultCache cache) {
+        this.cache = cache;
+        Map<OperationAction, List<Node>> nodesOf = new IdentityHashMap();
+        for(OperationAction action : actions) {
+            Node node = new Node(action, nodes.size());
+            nodes.add(node);
+            List<Node> same = nodesOf.get(action);
+            if(same == null) {
+                same = new ArrayList();
+                nodesOf.put(action, same);
+            }
+            same.add(node);
+        }
+
+        for(Node node : nodes) {
+            for(Object dependency : node.action.getDependencies()) {
+                List<Node> required = nodesOf.get(dependency);
+                if(required == null) {
+                    continue;
+                }
+                for(Node before : required) {
+                    before.dependents.add(node);
+                    node.dependencyCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get actions in an order where every action comes after the actions it depends on
+     * and otherwise keeps the order of the batch
+     * @param actions actions of batch in batch order
+     * @return actions itself if no action has dependencies
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     */
+    static Collection<OperationAction> order(Collection<OperationAction> actions) {
+        for(OperationAction action : actions) {
+            if(action.hasDependencies()) {
+                List<OperationAction> ordered = new ArrayList();
+                for(Node node : new OperationGraph(actions).order()) {
+                    ordered.add(node.action);
+                }
+                return ordered;
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Get actions in an order where every action comes after the actions it depends on
+     * and actions that are ready at the same time are taken by rank, so cheap actions
+     * that often fail come first. Actions of equal rank keep the order of the batch
+     * @param actions actions of batch in batch order
+     * @return ordered actions
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @see FailureCost#rank() 
+     */
+    static List<OperationAction> orderByCost(Collection<OperationAction> actions) {
+        final OperationGraph graph = new OperationGraph(actions);
+        final double[] ranks = new double[graph.nodes.size()];
+        for(Node node : graph.nodes) {
+            ranks[node.index] = node.action.getCost().rank();
+        }
+        PriorityQueue<Node> ready = new PriorityQueue(Math.max(1, ranks.length), new Comparator<Node>() {
+            @Override
+            public int compare(Node first, Node second) {
+                int result = Double.compare(ranks[first.index], ranks[second.index]);
+                return result != 0 ? result : Integer.compare(first.index, second.index);
+            }
+        });
+        int[] pending = new int[ranks.length];
+        for(Node node : graph.nodes) {
+            pending[node.index] = node.dependencyCount;
+            if(pending[node.index] == 0) {
+                ready.add(node);
+            }
+        }
+
+        List<OperationAction> ordered = new ArrayList(ranks.length);
+        while(!ready.isEmpty()) {
+            Node node = ready.poll();
+            ordered.add(node.action);
+            for(Node dependent : node.dependents) {
+                if(--pending[dependent.index] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if(ordered.size() < ranks.length) {
+            throw new IllegalArgumentException("Dependencies of batch contain a cycle");
+        }
+        return ordered;
+    }
+
+    /**
+     * Sort nodes so that all dependencies come first, ready nodes are taken in batch order
+     */
+    private List<Node> order() {
+        int[] pending = new int[nodes.size()];
+        Map<Node, Integer> positions = new IdentityHashMap();
+        for(int i = 0; i < nodes.size(); i++) {
+            pending[i] = nodes.get(i).dependencyCount;
+            positions.put(nodes.get(i), i);
+        }
+
+        List<Node> ordered = new ArrayList(nodes.size());
+        boolean[] done = new boolean[nodes.size()];
+        int next = 0;
+        while(ordered.size() < nodes.size()) {
+            //First node in batch order that is ready
+            while(next < nodes.size() && (done[next] || pending[next] > 0)) {
+                next++;
+            }
+            if(next == nodes.size()) {
+                throw new IllegalArgumentException("Dependencies of batch contain a cycle");
+            }
+            Node node = nodes.get(next);
+            done[next] = true;
+            ordered.add(node);
+            for(Node dependent : node.dependents) {
+                int position = positions.get(dependent);
+                if(--pending[position] == 0 && position < next) {
+                    next = position;
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Run all actions on executor, each action as soon as its dependencies are done.
+     * Returns when all actions are done or, after a failure, when no action is running anymore
+     * @param executor executor to run actions on
+     * @throws MethodBehaviourException first rule that is broken
+     * @throws IllegalArgumentException when dependencies contain a cycle or a method
+     *         don't accept its instance or arguments
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @throws InterruptedException when calling thread is interrupted while waiting,
+     *         actions that has not started will then not be run
+     */
+    void run(Executor executor) throws MethodBehaviourException, InterruptedException,
+                                       IllegalAccessException, InvocationTargetException {
+        //Fails on cycles before any action is run
+        order();
+        new Execution(executor, null).run();
+    }
+
+    /**
+     * Run all actions on executor like {@link #run(Executor)} but without stopping
+     * on failures, actions that depend on a failed action are not invoked
+     * @param executor executor to run actions on
+     * @return one result per action in batch order
+     * @throws IllegalArgumentException when dependencies contain a cycle
+     * @throws InterruptedException when calling thread is interrupted while waiting,
+     *         actions that has not started will then not be run
+     */
+    List<OperationResult> collect(Executor executor) throws InterruptedException {
+        order();
+        OperationResult[] results = new OperationResult[nodes.size()];
+        try {
+            new Execution(executor, results).run();
+        } catch(MethodBehaviourException | IllegalAccessException | InvocationTargetException e) {
+            //Failures of actions are kept in results
+            throw new IllegalStateException(e);
+        }
+
+        List<OperationResult> list = new ArrayList(results.length);
+        for(int i = 0; i < results.length; i++) {
+            list.add(results[i] == null ? new OperationResult(nodes.get(i).action) : results[i]);
+        }
+        return list;
+    }
+
+    /**
+     * One action and the actions that wait for it
+     */
+    private static final class Node {
+        private final OperationAction action;
+        private final int index;
+        private final List<Node> dependents = new ArrayList();
+        private int dependencyCount;
+
+        Node(OperationAction action, int index) {
+            this.action = action;
+            this.index = index;
+        }
+    }
+
+    /**
+     * State of one parallel run of graph, a run either stops on the first failure
+     * or keeps results of all actions
+     */
+    private final class Execution {
+        private final Executor executor;
+        private final OperationResult[] results;
+        private final Map<Node, AtomicInteger> pending = new IdentityHashMap();
+
+        /**Guarded by this, no more actions are submitted when running reaches zero*/
+        private int running;
+        private Throwable failure;
+        private boolean stopped;
+
+        /**
+         * @param executor executor to run actions on
+         * @param results array to keep results in or null to stop on first failure
+         */
+        Execution(Executor executor, OperationResult[] results) {
+            this.executor = executor;
+            this.results = results;
+            for(Node node : nodes) {
+                pending.put(node, new AtomicInteger(node.dependencyCount));
+            }
+        }
+
+        void run() throws MethodBehaviourException, InterruptedException,
+                          IllegalAccessException, InvocationTargetException {
+            for(Node node : nodes) {
+                if(node.dependencyCount == 0) {
+                    submit(node);
+                }
+            }
+
+            synchronized(this) {
+                try {
+                    while(running > 0) {
+                        wait();
+                    }
+                } catch(InterruptedException e) {
+                    stopped = true;
+                    throw e;
+                }
+
+                if(failure instanceof MethodBehaviourException) {
+                    throw (MethodBehaviourException) failure;
+                }
+                if(failure instanceof IllegalAccessException) {
+                    throw (IllegalAccessException) failure;
+                }
+                if(failure instanceof InvocationTargetException) {
+                    throw (InvocationTargetException) failure;
+                }
+                if(failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if(failure instanceof Error) {
+                    throw (Error) failure;
+                }
+            }
+        }
+
+        private void submit(final Node node) {
+            synchronized(this) {
+                if(stopped) {
+                    return;
+                }
+                running++;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        invoke(node);
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                if(results != null) {
+                    results[node.index] = new OperationResult(node.action, null, e);
+                    e = null;
+                }
+                finish(e);
+            }
+        }
+
+        private void invoke(Node node) {
+            synchronized(this) {
+                if(stopped) {
+                    finish(null);
+                    return;
+                }
+            }
+
+            Object value;
+            try {
+                value = node.action.invokeMethod(cache);
+            } catch(IllegalAccessException | InvocationTargetException | MethodBehaviourException | RuntimeException e) {
+                if(results != null) {
+                    results[node.index] = new OperationResult(node.action, null, e);
+                    finish(null);
+                } else {
+                    finish(e);
+                }
+                return;
+            } catch(Error e) {
+                finish(e);
+                return;
+            }
+
+            if(results != null) {
+                results[node.index] = new OperationResult(node.action, value, null);
+            }
+            for(Node dependent : node.dependents) {
+                if(pending.get(dependent).decrementAndGet() == 0) {
+                    submit(dependent);
+                }
+            }
+            finish(null);
+        }
+
+        /**
+         * Mark one submitted action as done, failure is kept if it is the first
+         */
+        private synchronized void finish(Throwable e) {
+            running--;
+            if(e != null) {
+                if(failure == null && !stopped) {
+                    failure = e;
+                }
+                stopped = true;
+            }
+            if(running == 0) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Calls one method of a class with an array of arguments, either through a resolved
+ * method handle or, for plans generated from {@link InteractionPlan}, through a direct
+ * method call that needs no reflection at all.
+ *
+ * Invokers are immutable and can be called by several threads at the same time.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public interface OperationInvoker {
+
+    /**
+     * Call method
+     * @param instance object to call method on, ignored for static methods
+     * @param arguments values to call method with, primitive values are boxed
+     * @return return value of method, null for void methods
+     * @throws IllegalAccessException when method is not accessible
+     * @throws InvocationTargetException when method throws an exception
+     */
+    Object invoke(Object instance, Object[] arguments) throws IllegalAccessException, InvocationTargetException;
+}
@@ -0,0 +1,34 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+/**
+ * Listener that is told about every invocation of an operation, set it through
+ * {@link OperationAction#setMetricsListener(OperationMetricsListener)}.
+ *
+ * Methods are called by the thread that invoked the operation, right after the method
+ * of the operation has returned, so implementations must be thread safe and fast.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public interface OperationMetricsListener {
+
+    /**
+     * Method of action has returned, called before rules are validated
+     * @param action action that was invoked
+     * @param nanos time invocation took in nanoseconds
+     */
+    public void invoked(OperationAction action, long nanos);
+
+    /**
+     * Method of action could not be invoked or threw an exception
+     * @param action action that was invoked
+     * @param nanos time until invocation failed in nanoseconds
+     * @param failure reflective exception of invocation
+     */
+    public void invocationFailed(OperationAction action, long nanos, Exception failure);
+
+    /**
+     * Return value of action broke a rule
+     * @param action action that was invoked
+     * @param rule first rule that was broken
+     */
+    public void ruleBroken(OperationAction action, OperationValidBehavior rule);
+}
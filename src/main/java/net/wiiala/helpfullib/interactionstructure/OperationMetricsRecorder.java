@@ -0,0 +1,198 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+
+/**
+ * Metrics listener that keeps statistics per invoked action: a latency histogram,
+ * number of calls, number of failed invocations and number of broken rules per comparision.
+ * Actions are told apart by identity, so two actions that invoke the same method with other
+ * instances or parameters have statistics of their own, which can be merged per method.
+ * Statistics of an action are kept until it is removed or the recorder is reset.
+ *
+ * Can be used as listener of {@link OperationAction} directly or together with another
+ * listener it passes all invocations on to.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationMetricsRecorder implements OperationMetricsListener {
+
+    private final ConcurrentMap<OperationAction, Statistics> statistics = new ConcurrentHashMap();
+    private final OperationMetricsListener next;
+
+    /**
+     * Recorder that only keeps statistics
+     */
+    public OperationMetricsRecorder() {
+        this(null);
+    }
+
+    /**
+     * Recorder that keeps statistics and tells another listener about every invocation
+     * @param next listener to pass invocations on to, e.g. a JfrOperationListener, or null
+     */
+    public OperationMetricsRecorder(OperationMetricsListener next) {
+        this.next = next;
+    }
+
+    @Override
+    public void invoked(OperationAction action, long nanos) {
+        Statistics current = statisticsOf(action);
+        current.calls.incrementAndGet();
+        current.latency.record(nanos);
+        if(next != null) {
+            next.invoked(action, nanos);
+        }
+    }
+
+    @Override
+    public void invocationFailed(OperationAction action, long nanos, Exception failure) {
+        Statistics current = statisticsOf(action);
+        current.calls.incrementAndGet();
+        current.invocationFailures.incrementAndGet();
+        current.latency.record(nanos);
+        if(next != null) {
+            next.invocationFailed(action, nanos, failure);
+        }
+    }
+
+    @Override
+    public void ruleBroken(OperationAction action, OperationValidBehavior rule) {
+        statisticsOf(action).ruleFailures.incrementAndGet(rule.getComparision().ordinal());
+        if(next != null) {
+            next.ruleBroken(action, rule);
+        }
+    }
+
+    /**
+     * Get statistics of one action
+     * @param action invoked action
+     * @return statistics or null if action has not been invoked
+     */
+    public Statistics getStatistics(OperationAction action) {
+        return statistics.get(action);
+    }
+
+    /**
+     * Get statistics of all actions that invoke a method, merged into one
+     * @param method invoked method
+     * @return copy of merged statistics or null if no action of method has been invoked
+     */
+    public Statistics getStatistics(Method method) {
+        Statistics merged = null;
+        for(Map.Entry<OperationAction, Statistics> entry : statistics.entrySet()) {
+            if(method.equals(entry.getKey().getMethod())) {
+                if(merged == null) {
+                    merged = new Statistics();
+                }
+                merged.add(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Get statistics of all invoked actions
+     * @return unmodifiable live view of statistics per action
+     */
+    public Map<OperationAction, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Remove statistics of one action, e.g. when it will not be invoked again
+     * @param action action to forget
+     */
+    public void remove(OperationAction action) {
+        statistics.remove(action);
+    }
+
+    /**
+     * Remove all statistics
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    private Statistics statisticsOf(OperationAction action) {
+        Statistics current = statistics.get(action);
+        if(current == null) {
+            current = new Statistics();
+            Statistics previous = statistics.putIfAbsent(action, current);
+            if(previous != null) {
+                current = previous;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Statistics of one action, or of all actions of a method when merged
+     */
+    public static final class Statistics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong invocationFailures = new AtomicLong();
+        private final AtomicLongArray ruleFailures = new AtomicLongArray(COMPARISION.values().length);
+
+        private Statistics() {
+        }
+
+        private void add(Statistics other) {
+            latency.add(other.latency);
+            calls.addAndGet(other.calls.get());
+            invocationFailures.addAndGet(other.invocationFailures.get());
+            for(int i = 0; i < ruleFailures.length(); i++) {
+                ruleFailures.addAndGet(i, other.ruleFailures.get(i));
+            }
+        }
+
+        /**
+         * Get histogram of invocation latencies in nanoseconds
+         * @return histogram
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Get number of invocations
+         * @return calls including failed ones
+         */
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /**
+         * Get number of invocations that failed or threw an exception
+         * @return failed invocations
+         */
+        public long getInvocationFailures() {
+            return invocationFailures.get();
+        }
+
+        /**
+         * Get number of broken rules of a comparision type
+         * @param comparision type of rule
+         * @return number of times such a rule was broken
+         */
+        public long getRuleFailures(COMPARISION comparision) {
+            return ruleFailures.get(comparision.ordinal());
+        }
+
+        @Override
+        public String toString() {
+            long broken = 0;
+            for(int i = 0; i < ruleFailures.length(); i++) {
+                broken += ruleFailures.get(i);
+            }
+            return "calls=" + getCalls() + " failures=" + getInvocationFailures()
+                   + " brokenRules=" + broken + " latency[" + latency + "]";
+        }
+    }
+}
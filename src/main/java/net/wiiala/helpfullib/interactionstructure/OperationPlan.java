@@ -0,0 +1,171 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import net.wiiala.helpfullib.tuple.InvalidTupleException;
+import net.wiiala.helpfullib.tuple.Tuple;
+import net.wiiala.helpfullib.tuple.TupleSchema;
+
+/**
+ * Immutable plan of a batch, built by {@link OperationBatchBuilder}, {@link OperationBatch#toPlan()}
+ * or a builder generated from {@link InteractionPlan}.
+ *
+ * Every action is copied when the plan is built and the copies are kept in an array in an
+ * order where every action comes after the actions it depends on, so changing an action
+ * afterwards does not change the plan. A plan can be run by any number of threads at the
+ * same time without locks, every run only reads the plan. Instances of the actions are
+ * shared by all runs and must allow that themselves.
+ *
+ * Return values of actions with an identifier can be collected into a {@link Tuple} of a
+ * schema that is resolved when the plan is built, together with the slot of every value.
+ * Every run then sets the slots of one new tuple directly, return values of int, long,
+ * double and boolean methods are kept unboxed in primitive slots.
+ *
+ * Rules are tested in the order they were added, the adaptive order and result cache
+ * of a batch are not used by plans.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public final class OperationPlan {
+
+    private final PlannedOperation[] operations;
+
+    /**Shape of result tuples, one slot per action with an identifier*/
+    private final TupleSchema resultSchema;
+
+    /**Slot of return value of every operation or -1 if it is not kept*/
+    private final int[] resultSlots;
+
+    /**
+     * Build plan of actions
+     * @param actions actions in batch order
+     * @throws IllegalArgumentException when dependencies contain a cycle or
+     *         several actions have the same identifier
+     * @throws IllegalStateException when an action has no method
+     */
+    OperationPlan(Collection<OperationAction> actions) {
+        this(copiesOf(OperationGraph.order(actions)));
+    }
+
+    /**
+     * Build plan of operations
+     * @param operations operations in the order they are invoked, array is kept by plan
+     * @throws IllegalArgumentException when several operations have the same identifier
+     */
+    OperationPlan(PlannedOperation[] operations) {
+        this.operations = operations;
+        this.resultSlots = new int[operations.length];
+        List<String> identifiers = new ArrayList();
+        List<Class<?>> types = new ArrayList();
+        for(int i = 0; i < operations.length; i++) {
+            if(operations[i].getIdentifier() == null) {
+                resultSlots[i] = -1;
+            } else {
+                resultSlots[i] = identifiers.size();
+                identifiers.add(operations[i].getIdentifier());
+                types.add(operations[i].getReturnType());
+            }
+        }
+
+        try {
+            this.resultSchema = TupleSchema.of(identifiers.toArray(new String[0]), types.toArray(new Class<?>[0]));
+        } catch(InvalidTupleException e) {
+            throw new IllegalArgumentException("Several actions of plan have the same identifier " + identifiers);
+        }
+    }
+
+    private static PlannedOperation[] copiesOf(Collection<OperationAction> ordered) {
+        PlannedOperation[] copies = new PlannedOperation[ordered.size()];
+        int i = 0;
+        for(OperationAction action : ordered) {
+            copies[i++] = action.plan();
+        }
+        return copies;
+    }
+
+    /**
+     * Get number of operations in plan
+     * @return number of operations
+     */
+    public int size() {
+        return operations.length;
+    }
+
+    /**
+     * Get shape of result tuples, identifiers are in the order actions are invoked and
+     * slots of methods that return int, long, double or boolean are primitive
+     * @return schema of results
+     */
+    public TupleSchema getResultSchema() {
+        return resultSchema;
+    }
+
+    /**
+     * Get actions in the order they are invoked, actions may have changed since the plan was built
+     * @return unmodifiable list of actions, null for operations of generated plans
+     */
+    public List<OperationAction> getActions() {
+        return new AbstractList<OperationAction>() {
+            @Override
+            public OperationAction get(int index) {
+                return operations[index].getAction();
+            }
+
+            @Override
+            public int size() {
+                return operations.length;
+            }
+        };
+    }
+
+    /**
+     * Invoke all operations in order, the first operation that fails stops the run
+     * @return return value of every operation in the order they were invoked
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @throws MethodBehaviourException first rule that is broken
+     */
+    public Object[] run() throws IllegalAccessException, InvocationTargetException, MethodBehaviourException {
+        Object[] values = new Object[operations.length];
+        for(int i = 0; i < operations.length; i++) {
+            values[i] = operations[i].invoke();
+        }
+        return values;
+    }
+
+    /**
+     * Invoke all operations in order and collect return values of actions with an identifier
+     * @return tuple of return values
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @throws MethodBehaviourException first rule that is broken
+     * @see #runToTuple(java.lang.Class) 
+     */
+    public Tuple runToTuple() throws IllegalAccessException, InvocationTargetException, MethodBehaviourException {
+        return runToTuple(null);
+    }
+
+    /**
+     * Invoke all operations in order and collect return values of actions with an identifier
+     * into a tuple of class R, that can then be turned into an R with {@link Tuple#toObject(String...)}
+     * @param <R> class result represents
+     * @param resultClass class result represents or null
+     * @return tuple of return values
+     * @throws IllegalAccessException when a method can't be accessed
+     * @throws InvocationTargetException when a method throws an exception
+     * @throws MethodBehaviourException first rule that is broken
+     */
+    public <R> Tuple<R> runToTuple(Class<R> resultClass) throws IllegalAccessException, InvocationTargetException,
+                                                              MethodBehaviourException {
+        Tuple<R> result = new Tuple(resultClass, resultSchema);
+        for(int i = 0; i < operations.length; i++) {
+            Object value = operations[i].invoke();
+            if(resultSlots[i] >= 0) {
+                result.setValue(resultSlots[i], value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+/**
+ * Outcome of one invoked operation: the return value if all rules were followed,
+ * otherwise what made the operation fail. An operation that was never invoked,
+ * e.g. because an operation it depends on failed, has neither.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationResult {
+
+    private final OperationAction action;
+    private final boolean invoked;
+    private final Object value;
+    private final Throwable failure;
+
+    /**
+     * Result of an operation that was never invoked
+     * @param action operation result is of
+     */
+    public OperationResult(OperationAction action) {
+        this.action = action;
+        this.invoked = false;
+        this.value = null;
+        this.failure = null;
+    }
+
+    /**
+     * Result of an invoked operation
+     * @param action operation result is of
+     * @param value return value of method, null if it failed
+     * @param failure MethodBehaviourException when a rule is broken, reflective exceptions
+     *        when method could not be invoked or threw an exception, otherwise null
+     */
+    public OperationResult(OperationAction action, Object value, Throwable failure) {
+        this.action = action;
+        this.invoked = true;
+        this.value = value;
+        this.failure = failure;
+    }
+
+    /**
+     * Get the operation this is the result of
+     * @return operation
+     */
+    public OperationAction getAction() {
+        return action;
+    }
+
+    /**
+     * Check if operation was invoked
+     * @return false if operation was skipped
+     */
+    public boolean isInvoked() {
+        return invoked;
+    }
+
+    /**
+     * Check if operation was invoked and followed all its rules
+     * @return true if successful
+     */
+    public boolean isSuccessful() {
+        return invoked && failure == null;
+    }
+
+    /**
+     * Get return value of method
+     * @return value or null if operation failed or was not invoked
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * Get why operation failed
+     * @return exception or null if operation was successful or not invoked
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Check if operation failed because one of its rules was broken
+     * @return true if a rule was broken
+     */
+    public boolean isRuleBroken() {
+        return failure instanceof MethodBehaviourException;
+    }
+
+    @Override
+    public String toString() {
+        if(!invoked) {
+            return "not invoked";
+        }
+        return failure == null ? "successful: " + value : "failed: " + failure.getMessage();
+    }
+}
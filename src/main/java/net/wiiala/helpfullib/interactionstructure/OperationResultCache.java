@@ -0,0 +1,256 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of return values of idempotent operations, e.g. reads that are run again with
+ * the same parameters in every batch. A value is kept per target instance, method and
+ * parameters, targets and parameters are compared with equals so instances that are
+ * equal share their results.
+ *
+ * The cache holds at most a maximum number of values and evicts the least recently used
+ * one when it is full, values older than their time to live are never returned.
+ * Only return values are cached, rules of an action are tested again on every hit.
+ * The cache can be shared by several batches and threads.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationResultCache {
+
+    private final int maximumSize;
+    private final long timeToLive;
+    private final LinkedHashMap<Key, CachedValue> entries;
+
+    /**Guarded by entries*/
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Cache where values are kept until they are evicted for newer values
+     * @param maximumSize maximum number of cached values
+     */
+    public OperationResultCache(int maximumSize) {
+        this(maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cache where values expire after a time
+     * @param maximumSize maximum number of cached values
+     * @param timeToLive time a value is kept after it was returned by its method, zero to keep it until evicted
+     * @param unit unit of time to live
+     */
+    public OperationResultCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1 but was " + maximumSize);
+        }
+        if(timeToLive < 0) {
+            throw new IllegalArgumentException("Time to live can't be negative but was " + timeToLive);
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLive = unit.toNanos(timeToLive);
+        this.entries = new LinkedHashMap<Key, CachedValue>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedValue> eldest) {
+                if(size() > OperationResultCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get cached return value of a method
+     * @param target instance method was invoked on
+     * @param method invoked method
+     * @param parameters parameters method was invoked with, array is not kept
+     * @return cached entry or null if value is not cached or has expired
+     */
+    CachedValue get(Object target, Method method, Object[] parameters) {
+        Key key = new Key(target, method, parameters);
+        synchronized(entries) {
+            CachedValue entry = entries.get(key);
+            if(entry != null && isExpired(entry, System.nanoTime())) {
+                entries.remove(key);
+                evictions++;
+                entry = null;
+            }
+            if(entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Cache return value of a method
+     * @param target instance method was invoked on
+     * @param method invoked method
+     * @param parameters parameters method was invoked with, array is copied
+     * @param value return value
+     */
+    void put(Object target, Method method, Object[] parameters, Object value) {
+        Key key = new Key(target, method, parameters.clone());
+        CachedValue entry = new CachedValue(value, System.nanoTime());
+        synchronized(entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private boolean isExpired(CachedValue entry, long now) {
+        return timeToLive > 0 && now - entry.created >= timeToLive;
+    }
+
+    /**
+     * Remove all values that has expired, expired values are otherwise removed
+     * when they are asked for or evicted
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        synchronized(entries) {
+            Iterator<CachedValue> it = entries.values().iterator();
+            while(it.hasNext()) {
+                if(isExpired(it.next(), now)) {
+                    it.remove();
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all cached values, statistics are kept
+     */
+    public void invalidateAll() {
+        synchronized(entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get number of cached values, including values that has expired but not been removed
+     * @return number of values
+     */
+    public int size() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get number of invocations that was served from cache
+     * @return hits
+     */
+    public long getHitCount() {
+        synchronized(entries) {
+            return hits;
+        }
+    }
+
+    /**
+     * Get number of invocations that was not cached and invoked the method
+     * @return misses
+     */
+    public long getMissCount() {
+        synchronized(entries) {
+            return misses;
+        }
+    }
+
+    /**
+     * Get number of values that was removed because cache was full or they had expired
+     * @return evictions
+     */
+    public long getEvictionCount() {
+        synchronized(entries) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Get share of lookups that was served from cache
+     * @return hit rate from 0 to 1, or 0 when nothing has been looked up
+     */
+    public double getHitRate() {
+        synchronized(entries) {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * Set hit, miss and eviction counts to zero
+     */
+    public void resetStatistics() {
+        synchronized(entries) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized(entries) {
+            return String.format("size=%d hits=%d misses=%d evictions=%d hitRate=%.2f",
+                                 entries.size(), hits, misses, evictions, getHitRate());
+        }
+    }
+
+    /**
+     * A cached return value
+     */
+    static final class CachedValue {
+        private final Object value;
+        private final long created;
+
+        CachedValue(Object value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Target, method and parameters of an invocation
+     */
+    private static final class Key {
+        private final Object target;
+        private final Method method;
+        private final Object[] parameters;
+        private final int hash;
+
+        Key(Object target, Method method, Object[] parameters) {
+            this.target = target;
+            this.method = method;
+            this.parameters = parameters;
+            this.hash = (target.hashCode() * 31 + method.hashCode()) * 31 + Arrays.deepHashCode(parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && method.equals(key.method) && target.equals(key.target)
+                   && Arrays.deepEquals(parameters, key.parameters);
+        }
+    }
+}
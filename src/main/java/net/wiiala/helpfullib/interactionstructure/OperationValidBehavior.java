@@ -6,148 +6,385 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
- * Object will contain information about a valid return value a method has 
- * and can then later be checked from this class 
+ * Object will contain information about a valid return value a method has
+ * and can then later be checked from this class.
+ *
+ * Each rule is compiled once into a check when it is created, e.g. a pattern is compiled
+ * and numbers are compared as numbers without casts, so validating a return value
+ * that follows the rule costs almost nothing. Messages are only built when a rule is broken.
  * @author Gustav Wiiala <wiiala.gustav@gmail.com>
  * @param <T>
  */
-public class OperationValidBehavior<T> {  
+public class OperationValidBehavior<T> {
 
     /**Allowed return values can be a complex object, a pattern expression, number etc.*/
     private final Object validValue;
-    
+
+    /**Highest allowed return value of a range*/
+    private final Object maxValue;
+
     /**Comparision type to use*/
     private final COMPARISION comparator;
-    
-   
+
+    /**Compiled check of rule*/
+    private final Check check;
+
     /**
      * The comparative attributes
      */
     public enum COMPARISION{
         /** Equals return value*/
-        EQUAL, 
+        EQUAL,
         /** does not return null*/
         NOTNULL,
         /** return value is less or equal to entered value*/
-        LESSOREQUAL , 
+        LESSOREQUAL ,
         /** return value is less than entered value*/
-        LESS , 
+        LESS ,
         /** return value is greater or equal to entered value*/
-        GREATEROREQUAL, 
+        GREATEROREQUAL,
         /** return value is greater than entered value*/
         GREATER,
+        /** return value is within entered min and max value, both included*/
+        RANGE,
         /** return value follows a string pattern that is mathed with entered string*/
         PATTERN,
         /** returns nothing (void)*/
-        VOID;  
+        VOID;
     }
-    
+
     /**
-     * Used when return type should be VOID 
+     * Used when return type should be VOID
      */
     public OperationValidBehavior(){
- 
+
         this.validValue = null;
+        this.maxValue = null;
         this.comparator = COMPARISION.VOID;
+        this.check = compile();
     }
-    
+
     /**
      * Used to add valid value method should be tested against
      * @param comparator
-     * @param validValue 
+     * @param validValue
+     * @throws IllegalArgumentException if comparator is RANGE which needs two values
      */
     public OperationValidBehavior(COMPARISION comparator,T validValue){
+       if(comparator == COMPARISION.RANGE){
+           throw new IllegalArgumentException("A range needs a min and a max value");
+       }
        this.comparator = comparator;
        this.validValue = validValue;
+       this.maxValue = null;
+       this.check = compile();
     }
-    
+
+    /**
+     * Used when return value must be within a range, both values included
+     * @param minValue lowest valid value
+     * @param maxValue highest valid value
+     */
+    public OperationValidBehavior(T minValue, T maxValue){
+       this.comparator = COMPARISION.RANGE;
+       this.validValue = minValue;
+       this.maxValue = maxValue;
+       this.check = compile();
+    }
+
+    /**
+     * Get comparision type of rule
+     * @return comparision
+     */
+    public COMPARISION getComparision(){
+        return comparator;
+    }
+
+    /**
+     * Get value return value is compared with, the min value of a range
+     * @return valid value
+     */
+    public Object getValidValue(){
+        return validValue;
+    }
+
+    /**
+     * Get max value of a range
+     * @return max value or null if rule is not a range
+     */
+    public Object getMaxValue(){
+        return maxValue;
+    }
+
     /**
      * Validate a method against rule set in this class
-     * and throws exception if non valid 
+     * and throws exception if non valid
      * @param method
      * @param returnValue
      * @throws MethodBehaviourException when method don't fit demands on it
      */
     public void validateMethod(Method method, Object returnValue) throws MethodBehaviourException {
-        
-        boolean comparableValues = true;
-        Comparable comparisionValue = null;
-        Comparable returningValue = null;
-        try{
-            comparisionValue = (Comparable) this.validValue;
-            returningValue = (Comparable) returnValue;
-        }catch(ClassCastException e){
-            comparableValues = false;
+        validate(method.getReturnType(), returnValue);
+    }
+
+    /**
+     * Validate return value of a method that is only known by its return type,
+     * e.g. a method that is called directly by a generated plan
+     * @param returnType declared return type of method
+     * @param returnValue return value
+     * @throws MethodBehaviourException when return value don't follow rule
+     */
+    void validate(Class<?> returnType, Object returnValue) throws MethodBehaviourException {
+        if(!check.accepts(returnType, returnValue)){
+            throw new MethodBehaviourException(check.failure(returnType, returnValue));
+        }
+    }
+
+    /**
+     * Test return value of a method against rule without building a message
+     * @param returnType declared return type of method
+     * @param returnValue return value
+     * @return true if return value follows rule
+     */
+    boolean accepts(Class<?> returnType, Object returnValue){
+        return check.accepts(returnType, returnValue);
+    }
+
+    /**
+     * Test a value that is not the return value of a method, e.g. a record of a file,
+     * against rule. VOID rules only apply to methods and accept no value
+     * @param value value to test
+     * @return true if value follows rule
+     */
+    boolean accepts(Object value){
+        return comparator != COMPARISION.VOID && check.accepts(null, value);
+    }
+
+    /**
+     * Message of why a value that is not the return value of a method breaks rule
+     * @param value value that don't follow rule
+     * @return message
+     */
+    String failureOf(Object value){
+        if(comparator == COMPARISION.VOID){
+            return "VOID rule can only be used on methods";
         }
-         
+        return check.failure(null, value);
+    }
+
+    /**
+     * Create check of rule
+     */
+    private Check compile(){
         switch(comparator) {
-            
-            case VOID : 
-                        if(method.getReturnType() != Void.TYPE){
-                            throw new MethodBehaviourException("Function returns: " + method.getReturnType() + " and not Void as stated ");
-                        }   
-                        break;
-                        
+            case VOID:
+                return new Check(){
+                    @Override
+                    boolean accepts(Class<?> returnType, Object value){
+                        return returnType == Void.TYPE;
+                    }
+                    @Override
+                    String failure(Class<?> returnType, Object value){
+                        return "Function returns: " + returnType + " and not Void as stated ";
+                    }
+                };
+
             case NOTNULL:
-                        if(returnValue == null){
-                            throw new MethodBehaviourException("Function returns: " + null + " which is not allowed ");
-                        }   
-                        break;
-                        
+                return new Check(){
+                    @Override
+                    boolean accepts(Class<?> returnType, Object value){
+                        return value != null;
+                    }
+                    @Override
+                    String failure(Class<?> returnType, Object value){
+                        return "Function returns: " + null + " which is not allowed ";
+                    }
+                };
+
             case PATTERN:
-                        try{
-                           if(returnValue instanceof CharSequence){
-                              throw new MethodBehaviourException("Return value of method is not of approriate type: " + returnValue.getClass() ); 
-                           }
-                           if(this.validValue instanceof String){
-                               throw new MethodBehaviourException("RegexExpression is stored in wrong object type: " + returnValue.getClass() );   
-                           }
-                           if(!Pattern.matches((String) this.validValue, (String)returnValue)){
-                               throw new MethodBehaviourException("Method does not match regex pattern ");
-                           } 
-                        }catch(PatternSyntaxException e){
-                            throw new MethodBehaviourException("Invalid regex pattern stored in this object");
-                        }
-                        break;
+                return compilePattern();
+
             case EQUAL:
-                       if(!this.validValue.equals(returnValue)){
-                           throw new MethodBehaviourException("return value of method don't match object in rule");
-                       }
-                       break;
-            
-            
-            case GREATER: 
-                        if(!comparableValues){ throw new MethodBehaviourException("Classes can not be compared");}
-                        
-                        //Smaller or equal then returning exception
-                        if( comparisionValue.compareTo(returningValue) >= 0 ){
-                            throw new MethodBehaviourException("return value is not greater than value in rule");
-                        }
-                        break;
-                        
+                return new Check(){
+                    @Override
+                    boolean accepts(Class<?> returnType, Object value){
+                        return validValue == null ? value == null : validValue.equals(value);
+                    }
+                    @Override
+                    String failure(Class<?> returnType, Object value){
+                        return "return value of method don't match object in rule";
+                    }
+                };
+
+            case GREATER:
+                return new Order(new Limit(validValue), null, false, false, "return value is not greater than value in rule");
             case GREATEROREQUAL:
-                        if(!comparableValues){ throw new MethodBehaviourException("Classes can not be compared");}
-                        
-                        //Smaller then returning exception
-                        if( comparisionValue.compareTo(returningValue) > 0 ){
-                            throw new MethodBehaviourException("return value is not greater or equal to value in rule");
-                        }
-                        break;
-            case LESS: 
-                        if(!comparableValues){ throw new MethodBehaviourException("Classes can not be compared");}
-                        
-                        if( comparisionValue.compareTo(returningValue) <= 0 ){
-                            throw new MethodBehaviourException("return value is not smaller to value in rule");
-                        }
-                        break;
-            case LESSOREQUAL: 
-                        if(!comparableValues){ throw new MethodBehaviourException("Classes can not be compared");}
-
-                        if( comparisionValue.compareTo(returningValue) < 0 ){
-                            throw new MethodBehaviourException("return value is not smaller or equal to value in rule");
-                        }
-                        break;
+                return new Order(new Limit(validValue), null, true, false, "return value is not greater or equal to value in rule");
+            case LESS:
+                return new Order(null, new Limit(validValue), false, false, "return value is not smaller to value in rule");
+            case LESSOREQUAL:
+                return new Order(null, new Limit(validValue), false, true, "return value is not smaller or equal to value in rule");
+            case RANGE:
+                return new Order(new Limit(validValue), new Limit(maxValue), true, true, "return value is not within range of rule");
+            default:
+                throw new IllegalStateException("Unknown comparision " + comparator);
+        }
+    }
+
+    /**
+     * Compile regex once, a pattern that is invalid or not a string is reported when validated
+     */
+    private Check compilePattern(){
+        final String invalid;
+        Pattern compiled = null;
+        if(!(validValue instanceof String)){
+            invalid = "RegexExpression is stored in wrong object type: " + (validValue == null ? null : validValue.getClass());
+        } else {
+            String error = null;
+            try{
+                compiled = Pattern.compile((String) validValue);
+            }catch(PatternSyntaxException e){
+                error = "Invalid regex pattern stored in this object";
+            }
+            invalid = error;
+        }
+
+        final Pattern pattern = compiled;
+        return new Check(){
+            @Override
+            boolean accepts(Class<?> returnType, Object value){
+                return pattern != null && value instanceof CharSequence && pattern.matcher((CharSequence) value).matches();
+            }
+            @Override
+            String failure(Class<?> returnType, Object value){
+                if(invalid != null){
+                    return invalid;
+                }
+                if(!(value instanceof CharSequence)){
+                    return "Return value of method is not of approriate type: " + (value == null ? null : value.getClass());
+                }
+                return "Method does not match regex pattern ";
+            }
+        };
+    }
+
+    /**
+     * A compiled rule
+     */
+    private abstract static class Check {
+
+        /**
+         * @param returnType declared return type of method or null if value is not a return value
+         * @return true if return value of method follows rule
+         */
+        abstract boolean accepts(Class<?> returnType, Object value);
+
+        /**
+         * Message of why a value don't follow rule, only called when it don't
+         */
+        abstract String failure(Class<?> returnType, Object value);
+    }
+
+    /**
+     * Check that return value is within a lower and an upper limit, either may be missing
+     */
+    private static final class Order extends Check {
+        private final Limit lower;
+        private final Limit upper;
+        private final boolean lowerIncluded;
+        private final boolean upperIncluded;
+        private final String message;
+
+        Order(Limit lower, Limit upper, boolean lowerIncluded, boolean upperIncluded, String message){
+            this.lower = lower;
+            this.upper = upper;
+            this.lowerIncluded = lowerIncluded;
+            this.upperIncluded = upperIncluded;
+            this.message = message;
+        }
+
+        @Override
+        boolean accepts(Class<?> returnType, Object value){
+            if(lower != null){
+                int result = lower.compare(value);
+                if(result == Limit.INCOMPARABLE || result < 0 || (result == 0 && !lowerIncluded)){
+                    return false;
+                }
+            }
+            if(upper != null){
+                int result = upper.compare(value);
+                if(result == Limit.INCOMPARABLE || result > 0 || (result == 0 && !upperIncluded)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        String failure(Class<?> returnType, Object value){
+            if((lower != null && lower.compare(value) == Limit.INCOMPARABLE)
+               || (upper != null && upper.compare(value) == Limit.INCOMPARABLE)){
+                return "Classes can not be compared";
+            }
+            return message;
+        }
+    }
+
+    /**
+     * A value to compare return values with. Numbers of primitive wrapper classes are
+     * compared by their numeric value whatever class they are, other values are compared
+     * through Comparable
+     */
+    private static final class Limit {
+        /**Result of a comparision of values that can't be compared*/
+        static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+        private final Object value;
+        private final boolean integral;
+        private final boolean decimal;
+        private final long longValue;
+        private final double doubleValue;
+
+        Limit(Object value){
+            this.value = value;
+            this.integral = isIntegral(value);
+            this.decimal = value instanceof Double || value instanceof Float;
+            this.longValue = integral ? ((Number) value).longValue() : 0;
+            this.doubleValue = integral || decimal ? ((Number) value).doubleValue() : 0;
+        }
+
+        private static boolean isIntegral(Object value){
+            return value instanceof Integer || value instanceof Long
+                   || value instanceof Short || value instanceof Byte;
+        }
+
+        /**
+         * Compare a return value with this limit
+         * @return negative, zero or positive as value is less, equal or greater than limit
+         *         or INCOMPARABLE if they can't be compared
+         */
+        int compare(Object other){
+            if(other == null || value == null){
+                return INCOMPARABLE;
+            }
+            if(integral && isIntegral(other)){
+                return Long.compare(((Number) other).longValue(), longValue);
+            }
+            if((integral || decimal) && (isIntegral(other) || other instanceof Double || other instanceof Float)){
+                double number = ((Number) other).doubleValue();
+                if(number != number || doubleValue != doubleValue){
+                    return INCOMPARABLE;
+                }
+                return number < doubleValue ? -1 : (number > doubleValue ? 1 : 0);
+            }
+            if(!(value instanceof Comparable)){
+                return INCOMPARABLE;
+            }
+            try{
+                return -Integer.signum(((Comparable) value).compareTo(other));
+            }catch(ClassCastException e){
+                return INCOMPARABLE;
+            }
         }
     }
-    
 }
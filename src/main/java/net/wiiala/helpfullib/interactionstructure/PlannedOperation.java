@@ -0,0 +1,130 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Immutable copy of instance, method, parameters and rules of an action as they were
+ * when a plan was built. Changes to the action after that are not seen and the copy
+ * can be invoked by several threads at the same time, as long as the instance allows it.
+ *
+ * Operations of generated plans are not copies of actions, their methods are only
+ * known by an invoker and a return type.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class PlannedOperation {
+
+    private final OperationAction<?> action;
+    private final String identifier;
+    private final Object instance;
+    private final OperationInvoker invoker;
+    private final Method method;
+    private final Class<?> returnType;
+    private final Object[] parameters;
+    private final OperationValidBehavior[] rules;
+
+    /**
+     * @param action action that was copied, only used to report metrics, or null to not report them
+     * @param identifier identifier of return value or null
+     * @param instance instance to invoke method on
+     * @param invoker resolved method of class of instance
+     * @param parameters parameters, array must not be changed after this
+     * @param rules rules, array must not be changed after this
+     */
+    PlannedOperation(OperationAction<?> action, String identifier, Object instance, MethodInvoker invoker,
+                     Object[] parameters, OperationValidBehavior[] rules) {
+        this.action = action;
+        this.identifier = identifier;
+        this.instance = instance;
+        this.invoker = invoker;
+        this.method = invoker.getMethod();
+        this.returnType = method.getReturnType();
+        this.parameters = parameters;
+        this.rules = rules;
+    }
+
+    /**
+     * Operation of a generated plan, it is not reported to metrics listener
+     * @param identifier identifier of return value
+     * @param instance instance to invoke method on or null for static methods
+     * @param invoker invoker that calls method directly
+     * @param returnType declared return type of method
+     * @param parameters parameters, array must not be changed after this
+     * @param rules rules, array must not be changed after this
+     */
+    PlannedOperation(String identifier, Object instance, OperationInvoker invoker, Class<?> returnType,
+                     Object[] parameters, OperationValidBehavior[] rules) {
+        this.action = null;
+        this.identifier = identifier;
+        this.instance = instance;
+        this.invoker = invoker;
+        this.method = null;
+        this.returnType = returnType;
+        this.parameters = parameters;
+        this.rules = rules;
+    }
+
+    /**
+     * Get action that was copied
+     * @return action or null for operations of generated plans
+     */
+    OperationAction<?> getAction() {
+        return action;
+    }
+
+    /**
+     * Get identifier that return value is kept under
+     * @return identifier or null
+     */
+    String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Get invoked method
+     * @return method or null for operations of generated plans
+     */
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Get declared return type of method
+     * @return return type
+     */
+    Class<?> getReturnType() {
+        return returnType;
+    }
+
+    /**
+     * Invoke method and test rules on its return value
+     * @return return value
+     * @throws MethodBehaviourException first broken rule
+     */
+    Object invoke() throws IllegalAccessException, InvocationTargetException, MethodBehaviourException {
+        OperationMetricsListener listener = action == null ? null : OperationAction.getMetricsListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        Object returnValue;
+        try {
+            returnValue = invoker.invoke(instance, parameters);
+        } catch(IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            if(listener != null) {
+                listener.invocationFailed(action, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        if(listener != null) {
+            listener.invoked(action, System.nanoTime() - start);
+        }
+
+        for(OperationValidBehavior rule : rules) {
+            if(!rule.accepts(returnType, returnValue)) {
+                if(listener != null) {
+                    listener.ruleBroken(action, rule);
+                }
+                rule.validate(returnType, returnValue);
+            }
+        }
+        return returnValue;
+    }
+}
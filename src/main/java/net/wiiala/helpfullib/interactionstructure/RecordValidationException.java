@@ -0,0 +1,51 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+/**
+ * Exception that occur when a record of a file breaks a rule,
+ * tells where in the file the record is.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class RecordValidationException extends MethodBehaviourException {
+
+    private final long lineNumber;
+    private final long offset;
+    private final String record;
+
+    /**
+     * Creates an exception with specified information
+     * @param message why record breaks rule
+     * @param lineNumber line of record, first line is 1
+     * @param offset byte offset in file where record starts
+     * @param record record that breaks rule
+     */
+    public RecordValidationException(String message, long lineNumber, long offset, String record) {
+        super(message + " at line " + lineNumber + " (byte " + offset + ")");
+        this.lineNumber = lineNumber;
+        this.offset = offset;
+        this.record = record;
+    }
+
+    /**
+     * Get line of record
+     * @return line number, first line is 1
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get where record starts
+     * @return byte offset in file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get record that breaks rule
+     * @return record without line separator
+     */
+    public String getRecord() {
+        return record;
+    }
+}
@@ -0,0 +1,479 @@
+package net.wiiala.helpfullib.interactionstructure.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import net.wiiala.helpfullib.interactionstructure.InteractionPlan;
+
+/**
+ * Annotation processor that generates a plan builder for every class annotated with
+ * {@link InteractionPlan}. Methods of all steps are resolved and dependencies are ordered
+ * at compile time, a step that names a missing method or depends on a missing step is
+ * a compile error. The generated builder extends
+ * {@link net.wiiala.helpfullib.interactionstructure.CompiledPlanBuilder} and has one
+ * invoker per step that calls its method directly.
+ *
+ * The processor is registered as a service so it runs automatically when this library
+ * is on the compile classpath.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@SupportedAnnotationTypes("net.wiiala.helpfullib.interactionstructure.InteractionPlan")
+public class InteractionPlanProcessor extends AbstractProcessor {
+
+    private static final String BUILDER = "net.wiiala.helpfullib.interactionstructure.CompiledPlanBuilder";
+    private static final String INVOKER = "net.wiiala.helpfullib.interactionstructure.OperationInvoker";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element element : roundEnv.getElementsAnnotatedWith(InteractionPlan.class)) {
+            if(element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@InteractionPlan can only be used on classes and interfaces");
+                continue;
+            }
+            try {
+                generate((TypeElement) element);
+            } catch(IOException e) {
+                error(element, "Could not write plan class: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolve steps of annotated class and write its plan builder
+     * @param type annotated class
+     */
+    private void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        AnnotationMirror plan = mirrorOf(type);
+
+        List<Step> steps = new ArrayList();
+        Map<String, Step> byId = new HashMap();
+        for(AnnotationValue value : (List<? extends AnnotationValue>) valueOf(plan, "value")) {
+            Step step = resolve(type, packageName, (AnnotationMirror) value.getValue());
+            if(step == null) {
+                return;
+            }
+            if(byId.put(step.id, step) != null) {
+                error(type, "Several steps have identifier " + step.id);
+                return;
+            }
+            steps.add(step);
+        }
+        for(Step step : steps) {
+            for(String dependency : step.dependsOn) {
+                if(!byId.containsKey(dependency)) {
+                    error(type, "Step " + step.id + " depends on missing step " + dependency);
+                    return;
+                }
+            }
+        }
+        List<Step> ordered = order(steps, byId);
+        if(ordered == null) {
+            error(type, "Dependencies of steps contain a cycle");
+            return;
+        }
+
+        String simpleName = (String) valueOf(plan, "name");
+        if(simpleName.isEmpty()) {
+            simpleName = flatName(type) + "Plan";
+        }
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        try(Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(new PlanClassWriter(packageName, simpleName, type.getQualifiedName().toString(), ordered).toString());
+        }
+    }
+
+    /**
+     * Resolve method of one step
+     * @return step or null if it can't be resolved, an error is then reported
+     */
+    private Step resolve(TypeElement type, String packageName, AnnotationMirror mirror) {
+        String id = (String) valueOf(mirror, "id");
+        String methodName = (String) valueOf(mirror, "method");
+        TypeMirror targetType = (TypeMirror) valueOf(mirror, "type");
+        List<TypeMirror> parameterTypes = new ArrayList();
+        for(AnnotationValue value : (List<? extends AnnotationValue>) valueOf(mirror, "parameters")) {
+            parameterTypes.add((TypeMirror) value.getValue());
+        }
+        List<String> dependsOn = new ArrayList();
+        for(AnnotationValue value : (List<? extends AnnotationValue>) valueOf(mirror, "dependsOn")) {
+            dependsOn.add((String) value.getValue());
+        }
+
+        if(!SourceVersion.isIdentifier(id) || SourceVersion.isKeyword(id)) {
+            error(type, "Identifier " + id + " of step is not a valid method name");
+            return null;
+        }
+        if(reservedNames().contains(id)) {
+            error(type, "Identifier " + id + " of step is the name of a method every plan builder has");
+            return null;
+        }
+        if(targetType.getKind() != TypeKind.DECLARED) {
+            error(type, "Type of step " + id + " must be a class");
+            return null;
+        }
+        TypeElement target = (TypeElement) ((DeclaredType) targetType).asElement();
+
+        ExecutableElement method = findMethod(target, methodName, parameterTypes);
+        if(method == null) {
+            error(type, "Step " + id + ": " + target.getQualifiedName() + " has no method "
+                        + methodName + parameterTypes.toString().replace('[', '(').replace(']', ')'));
+            return null;
+        }
+        if(!isAccessible(target, packageName) || !isAccessible(method, target, packageName)) {
+            error(type, "Step " + id + ": method " + methodName + " of " + target.getQualifiedName()
+                        + " can't be called from package " + packageName);
+            return null;
+        }
+        return new Step(id, target, method, dependsOn);
+    }
+
+    /**
+     * Find method with exact parameter types among declared and inherited methods
+     */
+    private ExecutableElement findMethod(TypeElement target, String name, List<TypeMirror> parameterTypes) {
+        for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(target))) {
+            List<? extends VariableElement> parameters = method.getParameters();
+            if(!method.getSimpleName().contentEquals(name) || parameters.size() != parameterTypes.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for(int i = 0; i < parameters.size() && matches; i++) {
+                matches = processingEnv.getTypeUtils().isSameType(erasure(parameters.get(i).asType()), erasure(parameterTypes.get(i)));
+            }
+            if(matches) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names of methods that generated builders inherit, a step method of the same name
+     * could clash with them
+     */
+    private Set<String> reservedNames() {
+        Set<String> names = new HashSet();
+        TypeElement builder = processingEnv.getElementUtils().getTypeElement(BUILDER);
+        for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(builder))) {
+            names.add(method.getSimpleName().toString());
+        }
+        return names;
+    }
+
+    private boolean isAccessible(TypeElement target, String packageName) {
+        Element element = target;
+        while(element instanceof TypeElement) {
+            if(!isAccessible(element.getModifiers(), element, packageName)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private boolean isAccessible(ExecutableElement method, TypeElement target, String packageName) {
+        return isAccessible(method.getModifiers(), method.getEnclosingElement(), packageName);
+    }
+
+    /**
+     * Public members can be called from any package and protected and package private members from the same package
+     */
+    private boolean isAccessible(Set<Modifier> modifiers, Element element, String packageName) {
+        if(modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        String elementPackage = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+        return !modifiers.contains(Modifier.PRIVATE) && elementPackage.equals(packageName);
+    }
+
+    /**
+     * Order steps so that every step comes after the steps it depends on, ready steps are taken in declaration order
+     * @return ordered steps or null if dependencies contain a cycle
+     */
+    private static List<Step> order(List<Step> steps, Map<String, Step> byId) {
+        List<Step> ordered = new ArrayList(steps.size());
+        Set<String> done = new HashSet();
+        while(ordered.size() < steps.size()) {
+            Step next = null;
+            for(Step step : steps) {
+                if(!done.contains(step.id) && done.containsAll(step.dependsOn)) {
+                    next = step;
+                    break;
+                }
+            }
+            if(next == null) {
+                return null;
+            }
+            done.add(next.id);
+            ordered.add(next);
+        }
+        return ordered;
+    }
+
+    private AnnotationMirror mirrorOf(TypeElement type) {
+        for(AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if(annotation.getQualifiedName().contentEquals(InteractionPlan.class.getCanonicalName())) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("Type is not annotated with @InteractionPlan");
+    }
+
+    /**
+     * Value of an annotation attribute, with its default if it is not set
+     */
+    private Object valueOf(AnnotationMirror mirror, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+            processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if(entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Annotation has no attribute " + name);
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    /**
+     * Name of class including enclosing classes joined by underscore
+     */
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element enclosing = type.getEnclosingElement();
+        while(enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * One resolved step of generated plan
+     */
+    private final class Step {
+        private final String id;
+        private final TypeElement target;
+        private final ExecutableElement method;
+        private final List<String> dependsOn;
+
+        Step(String id, TypeElement target, ExecutableElement method, List<String> dependsOn) {
+            this.id = id;
+            this.target = target;
+            this.method = method;
+            this.dependsOn = dependsOn;
+        }
+
+        boolean isStatic() {
+            return method.getModifiers().contains(Modifier.STATIC);
+        }
+
+        String targetName() {
+            return erasure(target.asType()).toString();
+        }
+
+        String returnClass() {
+            return erasure(method.getReturnType()).toString() + ".class";
+        }
+
+        boolean isVoid() {
+            return method.getReturnType().getKind() == TypeKind.VOID;
+        }
+
+        String parameterType(int index) {
+            return erasure(method.getParameters().get(index).asType()).toString();
+        }
+
+        /**
+         * Type to cast an argument to, wrapper class for primitives
+         */
+        String castType(int index) {
+            TypeMirror type = method.getParameters().get(index).asType();
+            if(type.getKind().isPrimitive()) {
+                return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+            }
+            return erasure(type).toString();
+        }
+
+        List<String> parameterNames() {
+            List<String> names = new ArrayList();
+            for(VariableElement parameter : method.getParameters()) {
+                names.add(parameter.getSimpleName().toString());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Writes source of one generated plan builder
+     */
+    private final class PlanClassWriter {
+        private final StringBuilder out = new StringBuilder();
+
+        PlanClassWriter(String packageName, String simpleName, String declaringClass, List<Step> steps) {
+            if(!packageName.isEmpty()) {
+                line("package %s;", packageName);
+                line("");
+            }
+            line("/**");
+            line(" * Builder of plan declared by {@link %s}, generated by %s", declaringClass, InteractionPlanProcessor.class.getName());
+            line(" */");
+            line("public final class %s extends %s {", simpleName, BUILDER);
+            line("");
+
+            StringBuilder identifiers = new StringBuilder();
+            StringBuilder returnTypes = new StringBuilder();
+            StringBuilder invokers = new StringBuilder();
+            for(int index = 0; index < steps.size(); index++) {
+                Step step = steps.get(index);
+                if(identifiers.length() > 0) {
+                    identifiers.append(", ");
+                    returnTypes.append(", ");
+                    invokers.append(", ");
+                }
+                identifiers.append("\"").append(step.id).append("\"");
+                returnTypes.append(step.returnClass());
+                invokers.append("new ").append(invokerName(index)).append("()");
+            }
+            line("    private static final String[] IDENTIFIERS = {%s};", identifiers);
+            line("    private static final Class<?>[] RETURN_TYPES = {%s};", returnTypes);
+            line("    private static final %s[] INVOKERS = {%s};", INVOKER, invokers);
+            line("");
+            line("    public %s() {", simpleName);
+            line("        super(IDENTIFIERS, RETURN_TYPES, INVOKERS);");
+            line("    }");
+            line("");
+
+            //Typed method per step
+            for(int index = 0; index < steps.size(); index++) {
+                Step step = steps.get(index);
+                List<String> names = step.parameterNames();
+                String instance = "instance";
+                while(names.contains(instance)) {
+                    instance = "_" + instance;
+                }
+                StringBuilder parameters = new StringBuilder();
+                if(!step.isStatic()) {
+                    parameters.append(step.targetName()).append(" ").append(instance);
+                }
+                StringBuilder arguments = new StringBuilder();
+                for(int i = 0; i < names.size(); i++) {
+                    if(parameters.length() > 0) {
+                        parameters.append(", ");
+                    }
+                    if(i > 0) {
+                        arguments.append(", ");
+                    }
+                    parameters.append(step.parameterType(i)).append(" ").append(names.get(i));
+                    arguments.append(names.get(i));
+                }
+                line("    /**");
+                line("     * Set instance and parameters of step %s, {@link %s#%s}", step.id, step.targetName(), step.method.getSimpleName());
+                line("     */");
+                line("    public %s %s(%s) {", simpleName, step.id, parameters);
+                if(step.isStatic()) {
+                    line("        setStep(%d, null, new Object[]{%s});", index, arguments);
+                } else {
+                    line("        if(%s == null) {", instance);
+                    line("            throw new IllegalArgumentException(\"Instance of step %s can't be null\");", step.id);
+                    line("        }");
+                    line("        setStep(%d, %s, new Object[]{%s});", index, instance, arguments);
+                }
+                line("        return this;");
+                line("    }");
+                line("");
+            }
+
+            //Direct invoker per step
+            for(int index = 0; index < steps.size(); index++) {
+                Step step = steps.get(index);
+                StringBuilder arguments = new StringBuilder();
+                for(int i = 0; i < step.method.getParameters().size(); i++) {
+                    if(i > 0) {
+                        arguments.append(", ");
+                    }
+                    arguments.append("(").append(step.castType(i)).append(") arguments[").append(i).append("]");
+                }
+                String call = (step.isStatic() ? step.targetName() : "((" + step.targetName() + ") instance)")
+                              + "." + step.method.getSimpleName() + "(" + arguments + ")";
+
+                line("    /**");
+                line("     * Calls {@link %s#%s} of step %s", step.targetName(), step.method.getSimpleName(), step.id);
+                line("     */");
+                line("    private static final class %s implements %s {", invokerName(index), INVOKER);
+                line("        @Override");
+                line("        public Object invoke(Object instance, Object[] arguments) throws java.lang.reflect.InvocationTargetException {");
+                line("            try {");
+                if(step.isVoid()) {
+                    line("                %s;", call);
+                    line("                return null;");
+                } else {
+                    line("                return %s;", call);
+                }
+                line("            } catch(Error e) {");
+                line("                throw e;");
+                line("            } catch(Throwable e) {");
+                line("                throw new java.lang.reflect.InvocationTargetException(e);");
+                line("            }");
+                line("        }");
+                line("    }");
+                line("");
+            }
+            line("}");
+        }
+
+        /**
+         * Name of invoker class of step, by position so names of steps can't make them clash
+         */
+        private String invokerName(int index) {
+            return "Step" + index + "Invoker";
+        }
+
+        private void line(String format, Object... arguments) {
+            out.append(String.format(format, arguments)).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.wiiala.helpfullib.tuple;
+
+/**
+ * This is a tuple element that holds a boolean value, a tuple created from it
+ * stores the value in a primitive slot so that it never needs to be boxed again
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BooleanTupleElement extends TupleElement<String, Boolean> {
+    public final boolean booleanValue;
+    
+    /**
+     * Create a boolean element to be used in a tuple
+     * @param identifier identifies element
+     * @param value actual value to be contained in element
+     */
+    public BooleanTupleElement(String identifier, boolean value) {
+        super(identifier, value);
+        this.booleanValue = value;
+    }
+}
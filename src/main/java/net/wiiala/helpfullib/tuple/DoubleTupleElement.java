@@ -0,0 +1,20 @@
+package net.wiiala.helpfullib.tuple;
+
+/**
+ * This is a tuple element that holds a double value, a tuple created from it
+ * stores the value in a primitive slot so that it never needs to be boxed again
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class DoubleTupleElement extends TupleElement<String, Double> {
+    public final double doubleValue;
+    
+    /**
+     * Create a double element to be used in a tuple
+     * @param identifier identifies element
+     * @param value actual value to be contained in element
+     */
+    public DoubleTupleElement(String identifier, double value) {
+        super(identifier, value);
+        this.doubleValue = value;
+    }
+}
@@ -0,0 +1,209 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This is a tuple that can't be changed after it is created and that is equal to every
+ * other immutable tuple of the same schema and values, which makes it usable as a
+ * composite key in maps and caches.
+ *
+ * The values are copied into final storage when the tuple is created so instances can be
+ * shared between threads without any synchronization. Values in object slots are not copied
+ * and must themselves be immutable for the tuple to stay a valid key.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ * @param <T>
+ */
+public final class ImmutableTuple <T> extends Tuple<T> implements Comparable<ImmutableTuple<?>> {
+
+    private final Object[] values;
+    private final long[] primitives;
+
+    /**Cached hash code, zero until computed*/
+    private int hash;
+
+    /**
+     * Define an immutable tuple through an array of elements
+     * @param elements elements of tuple
+     * @throws InvalidTupleException if same identifier occur in several tuple-elements
+     */
+    public ImmutableTuple(TupleElement... elements) throws InvalidTupleException {
+        this(new Tuple(elements));
+    }
+
+    /**
+     * Define an immutable tuple through a list of elements
+     * @param elements elements of tuple
+     * @throws InvalidTupleException if same identifier occur in several tuple-elements
+     */
+    public ImmutableTuple(List<TupleElement> elements) throws InvalidTupleException {
+        this(new Tuple(elements));
+    }
+
+    /**
+     * Define an immutable tuple directly on a shared schema
+     * @param schema shape of tuple
+     * @param values one value per slot in schema, values are copied
+     */
+    public ImmutableTuple(TupleSchema schema, Object... values) {
+        this(new Tuple(schema, values));
+    }
+
+    /**
+     * Define an immutable copy of a tuple
+     * @param tuple tuple to copy, may be a view
+     */
+    private ImmutableTuple(Tuple<T> tuple) {
+        this(tuple, new Object[tuple.getSchema().objectCount()], new long[tuple.getSchema().primitiveCount()]);
+    }
+
+    private ImmutableTuple(Tuple<T> tuple, Object[] values, long[] primitives) {
+        super(tuple.tupleClass(), tuple.getSchema(), values, primitives);
+        this.values = values;
+        this.primitives = primitives;
+
+        TupleSchema schema = tuple.getSchema();
+        for(int slot = 0; slot < schema.size(); slot++) {
+            Class<?> type = schema.getType(slot);
+            if(type == Object.class) {
+                values[schema.offsetOf(slot)] = tuple.objectAt(slot);
+            } else if(type == double.class) {
+                //Canonical NaN so that equal doubles always have equal bits
+                primitives[schema.offsetOf(slot)] = Double.doubleToLongBits(Double.longBitsToDouble(tuple.bitsAt(slot)));
+            } else {
+                primitives[schema.offsetOf(slot)] = tuple.bitsAt(slot);
+            }
+        }
+    }
+
+    /**
+     * Get an immutable copy of tuple
+     * @param <T> type of object tuple represent
+     * @param tuple tuple to copy
+     * @return tuple itself if it already is immutable otherwise a copy
+     */
+    public static <T> ImmutableTuple<T> copyOf(Tuple<T> tuple) {
+        if(tuple instanceof ImmutableTuple) {
+            return (ImmutableTuple<T>) tuple;
+        }
+        return new ImmutableTuple(tuple);
+    }
+
+    @Override
+    void setObject(int slot, Object value) {
+        throw new UnsupportedOperationException("Tuple is immutable");
+    }
+
+    @Override
+    void setBits(int slot, long bits) {
+        throw new UnsupportedOperationException("Tuple is immutable");
+    }
+
+    /**
+     * Hash code of schema and values, computed once
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if(h == 0) {
+            h = 31 * (31 * getSchema().hashCode() + Arrays.hashCode(values)) + Arrays.hashCode(primitives);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Immutable tuples are equal when they have the same schema and equal values
+     * @param obj object to compare with
+     * @return true if equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
+        if(!(obj instanceof ImmutableTuple)) {
+            return false;
+        }
+        ImmutableTuple<?> other = (ImmutableTuple<?>) obj;
+        return getSchema() == other.getSchema()
+                && hashCode() == other.hashCode()
+                && Arrays.equals(primitives, other.primitives)
+                && Arrays.equals(values, other.values);
+    }
+
+    /**
+     * Orders tuples slot by slot, tuples of different schemas are ordered by their
+     * identifiers. Primitive slots are compared numerically, null is ordered first and
+     * values of different classes are ordered by class name. Unequal values of a class
+     * that is not Comparable have no order consistent with equals and are rejected
+     * @param other tuple to compare with
+     * @return negative, zero or positive as this tuple is less, equal or greater
+     * @throws ClassCastException when a slot holds unequal values of a class that is not
+     *         Comparable, or of different classes with the same name
+     */
+    @Override
+    public int compareTo(ImmutableTuple<?> other) {
+        if(this == other) {
+            return 0;
+        }
+        TupleSchema schema = getSchema();
+        if(schema != other.getSchema()) {
+            return compareSchemas(schema, other.getSchema());
+        }
+
+        for(int slot = 0; slot < schema.size(); slot++) {
+            Class<?> type = schema.getType(slot);
+            int result;
+            if(type == Object.class) {
+                result = compareValues(objectAt(slot), other.objectAt(slot));
+            } else if(type == double.class) {
+                result = Double.compare(Double.longBitsToDouble(bitsAt(slot)), Double.longBitsToDouble(other.bitsAt(slot)));
+            } else {
+                result = Long.compare(bitsAt(slot), other.bitsAt(slot));
+            }
+            if(result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareSchemas(TupleSchema first, TupleSchema second) {
+        int result = Integer.compare(first.size(), second.size());
+        for(int slot = 0; result == 0 && slot < first.size(); slot++) {
+            result = first.getIdentifier(slot).compareTo(second.getIdentifier(slot));
+            if(result == 0) {
+                result = first.getType(slot).getName().compareTo(second.getType(slot).getName());
+            }
+        }
+        return result;
+    }
+
+    private static int compareValues(Object first, Object second) {
+        if(first == second) {
+            return 0;
+        }
+        if(first == null) {
+            return -1;
+        }
+        if(second == null) {
+            return 1;
+        }
+        if(first.getClass() == second.getClass()) {
+            if(first instanceof Comparable) {
+                return ((Comparable) first).compareTo(second);
+            }
+            if(first.equals(second)) {
+                return 0;
+            }
+            throw new ClassCastException("Values of " + first.getClass().getName() + " can't be ordered since it is not Comparable");
+        }
+        int result = first.getClass().getName().compareTo(second.getClass().getName());
+        if(result == 0) {
+            throw new ClassCastException("Values of classes named " + first.getClass().getName() + " from different class loaders can't be ordered");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This is a set of tuples that keeps indexes on chosen identifiers so that tuples
+ * can be found by the value of an element without scanning the whole set.
+ * A hash index gives constant time lookups on equal values and a sorted index
+ * also gives range lookups in logarithmic time.
+ *
+ * Indexes are updated as tuples are added or removed, a tuple must therefore not be
+ * changed while it is in the store; {@link ImmutableTuple} is a natural fit.
+ * Values are looked up by their boxed value so a long element must be looked up with a Long.
+ * A store is not thread safe.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ * @param <T> type of object tuples represent
+ */
+public class IndexedTupleStore <T> extends AbstractCollection<Tuple<T>> {
+
+    private final Set<Tuple<T>> tuples = new LinkedHashSet();
+    private final Map<String, Index> indexes = new HashMap();
+
+    /**
+     * Adds a hash index on identifier for lookups on equal values
+     * @param identifier is the key for one tuple-element
+     */
+    public void addHashIndex(String identifier) {
+        addIndex(new Index(identifier, new HashMap()));
+    }
+
+    /**
+     * Adds a sorted index on identifier for lookups on equal values and ranges of values,
+     * values of identifier must be comparable to each other and null values are not indexed
+     * @param identifier is the key for one tuple-element
+     */
+    public void addSortedIndex(String identifier) {
+        addIndex(new Index(identifier, new TreeMap()));
+    }
+
+    private void addIndex(Index index) {
+        for(Tuple<T> tuple : tuples) {
+            index.add(tuple);
+        }
+        indexes.put(index.identifier, index);
+    }
+
+    /**
+     * Adds tuple to store and all its indexes, a tuple that can't be indexed is not added
+     * @param tuple tuple to add
+     * @return true if tuple was not already in store
+     * @throws ClassCastException when value of a sorted index can't be compared to values already in it
+     */
+    @Override
+    public boolean add(Tuple<T> tuple) {
+        if(!tuples.add(tuple)) {
+            return false;
+        }
+        List<Index> added = new ArrayList(indexes.size());
+        try {
+            for(Index index : indexes.values()) {
+                index.add(tuple);
+                added.add(index);
+            }
+        } catch(RuntimeException e) {
+            for(Index index : added) {
+                index.remove(tuple);
+            }
+            tuples.remove(tuple);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Removes tuple from store and all its indexes
+     * @param obj tuple to remove
+     * @return true if tuple was in store
+     */
+    @Override
+    public boolean remove(Object obj) {
+        if(!tuples.remove(obj)) {
+            return false;
+        }
+        for(Index index : indexes.values()) {
+            index.remove((Tuple<T>) obj);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return tuples.contains(obj);
+    }
+
+    @Override
+    public int size() {
+        return tuples.size();
+    }
+
+    @Override
+    public Iterator<Tuple<T>> iterator() {
+        final Iterator<Tuple<T>> iterator = tuples.iterator();
+        return new Iterator<Tuple<T>>() {
+            private Tuple<T> current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Tuple<T> next() {
+                current = iterator.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                for(Index index : indexes.values()) {
+                    index.remove(current);
+                }
+            }
+        };
+    }
+
+    /**
+     * Find all tuples where element of identifier equals value,
+     * without an index on identifier all tuples are scanned
+     * @param identifier is the key for one tuple-element
+     * @param value value to look for
+     * @return unmodifiable collection of matching tuples
+     */
+    public Collection<Tuple<T>> find(String identifier, Object value) {
+        Index index = indexes.get(identifier);
+        //Sorted indexes don't hold null values
+        if(index != null && !(value == null && index.buckets instanceof NavigableMap)) {
+            Set<Tuple<T>> bucket = index.buckets.get(value);
+            return bucket == null ? Collections.<Tuple<T>>emptySet() : Collections.unmodifiableSet(bucket);
+        }
+
+        List<Tuple<T>> found = new ArrayList();
+        for(Tuple<T> tuple : tuples) {
+            int slot = tuple.getSchema().indexOf(identifier);
+            if(slot >= 0 && equal(value, tuple.valueAt(slot))) {
+                found.add(tuple);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find all tuples where element of identifier is within a range,
+     * without a sorted index on identifier all tuples are scanned
+     * @param identifier is the key for one tuple-element
+     * @param from lowest value of range
+     * @param fromInclusive true if from is within range
+     * @param to highest value of range
+     * @param toInclusive true if to is within range
+     * @return matching tuples in value order when a sorted index is used
+     */
+    public Collection<Tuple<T>> findRange(String identifier, Object from, boolean fromInclusive,
+                                                            Object to, boolean toInclusive) {
+        List<Tuple<T>> found = new ArrayList();
+        Index index = indexes.get(identifier);
+
+        if(index != null && index.buckets instanceof NavigableMap) {
+            NavigableMap<Object, Set<Tuple<T>>> sorted = (NavigableMap) index.buckets;
+            for(Set<Tuple<T>> bucket : sorted.subMap(from, fromInclusive, to, toInclusive).values()) {
+                found.addAll(bucket);
+            }
+            return found;
+        }
+
+        for(Tuple<T> tuple : tuples) {
+            int slot = tuple.getSchema().indexOf(identifier);
+            if(slot < 0) {
+                continue;
+            }
+            Comparable value = (Comparable) tuple.valueAt(slot);
+            if(value == null) {
+                continue;
+            }
+            int low = value.compareTo(from);
+            int high = value.compareTo(to);
+            if((low > 0 || (fromInclusive && low == 0)) && (high < 0 || (toInclusive && high == 0))) {
+                found.add(tuple);
+            }
+        }
+        return found;
+    }
+
+    private static boolean equal(Object first, Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Index of one identifier that maps each value to the tuples that has it
+     */
+    private final class Index {
+        private final String identifier;
+        private final Map<Object, Set<Tuple<T>>> buckets;
+
+        Index(String identifier, Map<Object, Set<Tuple<T>>> buckets) {
+            this.identifier = identifier;
+            this.buckets = buckets;
+        }
+
+        void add(Tuple<T> tuple) {
+            int slot = tuple.getSchema().indexOf(identifier);
+            if(slot < 0) {
+                return;
+            }
+            Object value = tuple.valueAt(slot);
+            if(value == null && buckets instanceof NavigableMap) {
+                return;
+            }
+
+            Set<Tuple<T>> bucket = buckets.get(value);
+            if(bucket == null) {
+                bucket = new LinkedHashSet();
+                buckets.put(value, bucket);
+            }
+            bucket.add(tuple);
+        }
+
+        void remove(Tuple<T> tuple) {
+            int slot = tuple.getSchema().indexOf(identifier);
+            if(slot < 0) {
+                return;
+            }
+            Object value = tuple.valueAt(slot);
+            if(value == null && buckets instanceof NavigableMap) {
+                return;
+            }
+
+            Set<Tuple<T>> bucket = buckets.get(value);
+            if(bucket != null && bucket.remove(tuple) && bucket.isEmpty()) {
+                buckets.remove(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.wiiala.helpfullib.tuple;
+
+/**
+ * This is a tuple element that holds an int value, a tuple created from it
+ * stores the value in a primitive slot so that it never needs to be boxed again
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class IntTupleElement extends TupleElement<String, Integer> {
+    public final int intValue;
+    
+    /**
+     * Create an int element to be used in a tuple
+     * @param identifier identifies element
+     * @param value actual value to be contained in element
+     */
+    public IntTupleElement(String identifier, int value) {
+        super(identifier, value);
+        this.intValue = value;
+    }
+}
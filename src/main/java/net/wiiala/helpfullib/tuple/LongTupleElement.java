@@ -0,0 +1,20 @@
+package net.wiiala.helpfullib.tuple;
+
+/**
+ * This is a tuple element that holds a long value, a tuple created from it
+ * stores the value in a primitive slot so that it never needs to be boxed again
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class LongTupleElement extends TupleElement<String, Long> {
+    public final long longValue;
+    
+    /**
+     * Create a long element to be used in a tuple
+     * @param identifier identifies element
+     * @param value actual value to be contained in element
+     */
+    public LongTupleElement(String identifier, long value) {
+        super(identifier, value);
+        this.longValue = value;
+    }
+}
@@ -0,0 +1,136 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class chooses among overloaded constructors or methods the way the compiler would
+ * for the classes of a set of arguments: a parameter accepts its own class and subclasses
+ * of it, a primitive parameter accepts a non null value of its wrapper class and a wrapper
+ * class is more specific than its primitive type.
+ *
+ * When no accepting overload is more specific than all others the call is ambiguous,
+ * which is reported instead of picking one in the unspecified order reflection lists them.
+ * Used by {@link TupleObjectFactory} and by the method resolution of the interactionstructure library.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public final class Overloads {
+
+    private Overloads() {
+    }
+
+    /**
+     * Choose the most specific parameter list that accepts arguments of given classes
+     * @param candidates parameter types of every overload, an overload that comes earlier
+     *                   is kept over a later one with identical parameter types
+     * @param argumentClasses classes of arguments, null for null arguments
+     * @return index of chosen overload in candidates or -1 if none accepts arguments
+     * @throws IllegalArgumentException when several overloads accept arguments and none is most specific
+     */
+    public static int mostSpecific(List<Class<?>[]> candidates, Class<?>[] argumentClasses) {
+        List<Integer> accepting = new ArrayList();
+        for(int i = 0; i < candidates.size(); i++) {
+            Class<?>[] types = candidates.get(i);
+            if(types.length != argumentClasses.length || !accepts(types, argumentClasses)) {
+                continue;
+            }
+            boolean duplicate = false;
+            for(int j = 0; j < accepting.size() && !duplicate; j++) {
+                duplicate = Arrays.equals(types, candidates.get(accepting.get(j)));
+            }
+            if(!duplicate) {
+                accepting.add(i);
+            }
+        }
+
+        for(int i : accepting) {
+            boolean mostSpecific = true;
+            for(int j = 0; j < accepting.size() && mostSpecific; j++) {
+                int other = accepting.get(j);
+                mostSpecific = other == i || isMoreSpecific(candidates.get(i), candidates.get(other));
+            }
+            if(mostSpecific) {
+                return i;
+            }
+        }
+        if(accepting.isEmpty()) {
+            return -1;
+        }
+
+        List<String> ambiguous = new ArrayList();
+        for(int i : accepting) {
+            ambiguous.add(Arrays.toString(candidates.get(i)));
+        }
+        throw new IllegalArgumentException("Arguments " + Arrays.toString(argumentClasses) + " are ambiguous, accepted by " + ambiguous);
+    }
+
+    /**
+     * Checks if arguments can be passed to parameters, primitive parameters
+     * only accepts non null values of their wrapper class
+     * @param types parameter types
+     * @param arguments values to pass
+     * @return true if all arguments fit
+     */
+    public static boolean accepts(Class<?>[] types, Object[] arguments) {
+        if(types.length != arguments.length) {
+            return false;
+        }
+        for(int i = 0; i < types.length; i++) {
+            if(!accepts(types[i], arguments[i] == null ? null : arguments[i].getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean accepts(Class<?>[] types, Class<?>[] argumentClasses) {
+        for(int i = 0; i < types.length; i++) {
+            if(!accepts(types[i], argumentClasses[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean accepts(Class<?> type, Class<?> argumentClass) {
+        if(type.isPrimitive()) {
+            return argumentClass != null && wrapperOf(type) == argumentClass;
+        }
+        return argumentClass == null || type.isAssignableFrom(argumentClass);
+    }
+
+    /**
+     * Checks if every parameter of first can be passed on to second,
+     * a wrapper class is more specific than its primitive type
+     * @param first parameter types of one overload
+     * @param second parameter types of another overload of same length
+     * @return true if first is at least as specific as second
+     */
+    public static boolean isMoreSpecific(Class<?>[] first, Class<?>[] second) {
+        for(int i = 0; i < first.length; i++) {
+            if(!second[i].isAssignableFrom(first[i])
+               && !(second[i].isPrimitive() && wrapperOf(second[i]) == first[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get wrapper class of a primitive type
+     * @param primitive primitive type
+     * @return wrapper class
+     */
+    public static Class<?> wrapperOf(Class<?> primitive) {
+        if(primitive == int.class)     { return Integer.class; }
+        if(primitive == long.class)    { return Long.class; }
+        if(primitive == double.class)  { return Double.class; }
+        if(primitive == boolean.class) { return Boolean.class; }
+        if(primitive == float.class)   { return Float.class; }
+        if(primitive == short.class)   { return Short.class; }
+        if(primitive == byte.class)    { return Byte.class; }
+        if(primitive == char.class)    { return Character.class; }
+        return Void.class;
+    }
+}
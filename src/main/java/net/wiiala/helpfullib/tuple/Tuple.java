@@ -1,10 +1,9 @@
 package net.wiiala.helpfullib.tuple;
 
-import java.lang.reflect.Constructor;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,14 +11,21 @@ import java.util.Map;
  * This is a Java representation of a tuple where each element of it has a strong type
  * and it is best used as a return value for methods where no bigger need of creating 
  * specific class is in mind.
+ * 
+ * Identifiers are resolved to slots through a {@link TupleSchema} that is shared by all
+ * tuples of the same shape, so a tuple itself only stores its values in a flat array.
+ * Values of primitive slots are stored unboxed and can be read and written through the 
+ * typed getters and setters, e.g. {@link #getLong(String)}, without any allocation.
  * @author Gustav Wiiala <wiiala.gustav@gmail.com>
  * @param <T>
  */
 public class Tuple <T> {
     
-    private Map<String,TupleElement<String,Object>> tuples;
-    private T tupleType;
-    private Class tupleClass;
+    private final TupleSchema schema;
+    private final Object[] values;
+    private final long[] primitives;
+    private final T tupleType;
+    private final Class tupleClass;
  
     /**
      * Define a tuple through an array of elements that is of class T 
@@ -42,9 +48,11 @@ public class Tuple <T> {
      * @throws IllegalAccessException when this class is not allowed to instantiated object of type T
      */
     public Tuple (Class<T> tupleClass, List<TupleElement> elements) throws InvalidTupleException, InstantiationException, IllegalAccessException {
-        this(elements);
-        this.tupleClass = tupleClass;
-        this.tupleType = tupleClass.newInstance();
+        this(tupleClass, tupleClass.newInstance(), schemaOf(elements));
+        int slot = 0;
+        for(TupleElement element : elements) {
+            setSlot(slot++, element);
+        }
     }
     
     /**
@@ -62,13 +70,10 @@ public class Tuple <T> {
      * @throws InvalidTupleException if same identifier occur in several tuple-elements
      */
     public Tuple(List<TupleElement> elements) throws InvalidTupleException {
-        tuples = new HashMap();
-        
-        for(TupleElement<String, Object> element : elements) {
-            //Add element and if element identifier is not unique; throw exception 
-            if( tuples.put(element.identifier, element) != null){
-                throw new InvalidTupleException();
-            }
+        this(null, null, schemaOf(elements));
+        int slot = 0;
+        for(TupleElement element : elements) {
+            setSlot(slot++, element);
         }
     }
      
@@ -78,9 +83,167 @@ public class Tuple <T> {
      * @param elementMap tuple represented as map
      */
     public Tuple(T type, Map<String, TupleElement<String,Object>> elementMap){
-        this.tuples = elementMap;
-        this.tupleType = type;
-        this.tupleClass = type.getClass();
+        this(type.getClass(), type, schemaOf(elementMap));
+        int slot = 0;
+        for(TupleElement element : elementMap.values()) {
+            setSlot(slot++, element);
+        }
+    }
+    
+    /**
+     * Define a tuple on a shared schema where all slots have their default value,
+     * i.e. null, zero or false
+     * @param schema shape of tuple
+     */
+    public Tuple(TupleSchema schema) {
+        this(null, null, schema);
+    }
+    
+    /**
+     * Define a tuple of class T on a shared schema where all slots have their default value,
+     * unlike the other constructors no instance of T is created 
+     * @param tupleClass a class that this instance should be of
+     * @param schema shape of tuple
+     */
+    public Tuple(Class<T> tupleClass, TupleSchema schema) {
+        this(tupleClass, null, schema);
+    }
+    
+    /**
+     * Define a tuple directly on a shared schema, this is the cheapest way to create a tuple 
+     * as no identifier needs to be resolved
+     * @param schema shape of tuple
+     * @param values one value per slot in schema, if schema only has object slots 
+     *        the array is used as storage of tuple and is not copied
+     */
+    public Tuple(TupleSchema schema, Object... values) {
+        this(null, schema, values);
+    }
+    
+    /**
+     * Define a tuple of class T directly on a shared schema, 
+     * unlike the other constructors no instance of T is created 
+     * @param tupleClass a class that this instance should be of
+     * @param schema shape of tuple
+     * @param values one value per slot in schema, if schema only has object slots 
+     *        the array is used as storage of tuple and is not copied
+     */
+    public Tuple(Class<T> tupleClass, TupleSchema schema, Object... values) {
+        if(values.length != schema.size()) {
+            throw new IllegalArgumentException("Tuple of schema " + schema + " needs " + schema.size() + " values but got " + values.length);
+        }
+        this.tupleClass = tupleClass;
+        this.tupleType = null;
+        this.schema = schema;
+        
+        if(schema.primitiveCount() == 0) {
+            this.values = values;
+            this.primitives = null;
+        } else {
+            this.values = new Object[schema.objectCount()];
+            this.primitives = new long[schema.primitiveCount()];
+            for(int slot = 0; slot < values.length; slot++) {
+                setSlot(slot, values[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Define a tuple with default values on a shared schema
+     * @param tupleClass a class that this instance should be of or null
+     * @param tupleType an instance of object it represent or null
+     * @param schema shape of tuple
+     */
+    private Tuple(Class tupleClass, T tupleType, TupleSchema schema) {
+        this.tupleClass = tupleClass;
+        this.tupleType = tupleType;
+        this.schema = schema;
+        this.values = new Object[schema.objectCount()];
+        this.primitives = schema.primitiveCount() == 0 ? null : new long[schema.primitiveCount()];
+    }
+    
+    /**
+     * Define a tuple on given storage, views that store their values elsewhere 
+     * passes null as storage and overrides the slot accessors
+     * @param tupleClass a class that this instance should be of or null
+     * @param schema shape of tuple
+     * @param values storage of object slots
+     * @param primitives storage of primitive slots
+     */
+    Tuple(Class tupleClass, TupleSchema schema, Object[] values, long[] primitives) {
+        this.tupleClass = tupleClass;
+        this.tupleType = null;
+        this.schema = schema;
+        this.values = values;
+        this.primitives = primitives;
+    }
+    
+    /**
+     * Resolve the shared schema of elements
+     * @param elements elements of tuple
+     * @return schema of elements
+     * @throws InvalidTupleException if same identifier occur in several tuple-elements
+     */
+    private static TupleSchema schemaOf(List<TupleElement> elements) throws InvalidTupleException {
+        String[] identifiers = new String[elements.size()];
+        Class<?>[] types = new Class<?>[identifiers.length];
+        int slot = 0;
+        for(TupleElement<String, Object> element : elements) {
+            types[slot] = typeOf(element);
+            identifiers[slot++] = element.identifier;
+        }
+        return TupleSchema.of(identifiers, types);
+    }
+    
+    /**
+     * Resolve the shared schema of a map where keys are the identifiers
+     * @param elementMap tuple represented as map
+     * @return schema of map
+     */
+    private static TupleSchema schemaOf(Map<String, TupleElement<String,Object>> elementMap) {
+        String[] identifiers = new String[elementMap.size()];
+        Class<?>[] types = new Class<?>[identifiers.length];
+        int slot = 0;
+        for(Map.Entry<String, TupleElement<String,Object>> entry : elementMap.entrySet()) {
+            types[slot] = typeOf(entry.getValue());
+            identifiers[slot++] = entry.getKey();
+        }
+        
+        try {
+            return TupleSchema.of(identifiers, types);
+        } catch(InvalidTupleException e) {
+            //Keys of a map are always unique
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Get slot type of an element
+     * @param element element of tuple
+     * @return primitive type for primitive elements otherwise Object
+     */
+    private static Class<?> typeOf(TupleElement element) {
+        if(element instanceof IntTupleElement)     { return int.class; }
+        if(element instanceof LongTupleElement)    { return long.class; }
+        if(element instanceof DoubleTupleElement)  { return double.class; }
+        if(element instanceof BooleanTupleElement) { return boolean.class; }
+        return Object.class;
+    }
+    
+    /**
+     * Get the shared schema of this tuple
+     * @return schema that this tuple is of
+     */
+    public TupleSchema getSchema() {
+        return schema;
+    }
+    
+    /**
+     * Get the class objects of this tuple are created as
+     * @return class of T or null if T type is unknown
+     */
+    Class tupleClass() {
+        return tupleClass;
     }
     
     /**
@@ -88,16 +251,32 @@ public class Tuple <T> {
      * @return all identifier of tuple
      */
     public Collection<String> getIdentifiers() {
-        return tuples.keySet();
+        return schema.getIdentifiers();
     }
     
     /**
-    * Get element based on identifier
+    * Get element based on identifier, 
+    * elements of primitive slots are given as their primitive element type e.g. {@link LongTupleElement}
     * @param identifier is the key for one tuple-element
     * @return one element or null if it don't exist
     */
     public TupleElement getElement(String identifier) {
-        return tuples.get(identifier);
+        int slot = schema.indexOf(identifier);
+        if(slot < 0) {
+            return null;
+        }
+        return elementAt(slot);
+    }
+    
+    /**
+     * Get value based on identifier without creating any tuple-element,
+     * values of primitive slots are boxed
+     * @param identifier is the key for one tuple-element
+     * @return value of element or null if it don't exist
+     */
+    public Object getValue(String identifier) {
+        int slot = schema.indexOf(identifier);
+        return slot < 0 ? null : valueAt(slot);
     }
     
     /**
@@ -105,11 +284,334 @@ public class Tuple <T> {
      * @return a collection of all element in tuple
      */
     public Collection<TupleElement<String, Object>> getElements() {
-        return tuples.values();
+        List<TupleElement<String, Object>> elements = new ArrayList(schema.size());
+        for(int slot = 0; slot < schema.size(); slot++) {
+            elements.add(elementAt(slot));
+        }
+        return elements;
+    }
+    
+    /**
+     * Get value of an int slot or of an object slot storing a number
+     * @param identifier is the key for one tuple-element
+     * @return value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public int getInt(String identifier) {
+        int slot = slotOf(identifier);
+        Class<?> type = schema.getType(slot);
+        if(type == int.class) {
+            return (int) bitsAt(slot);
+        }
+        if(type == Object.class) {
+            return ((Number) valueAt(slot)).intValue();
+        }
+        throw wrongType(slot, int.class);
+    }
+    
+    /**
+     * Get value of an int or long slot or of an object slot storing a number
+     * @param identifier is the key for one tuple-element
+     * @return value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public long getLong(String identifier) {
+        int slot = slotOf(identifier);
+        Class<?> type = schema.getType(slot);
+        if(type == long.class || type == int.class) {
+            return bitsAt(slot);
+        }
+        if(type == Object.class) {
+            return ((Number) valueAt(slot)).longValue();
+        }
+        throw wrongType(slot, long.class);
+    }
+    
+    /**
+     * Get value of a double, int or long slot or of an object slot storing a number
+     * @param identifier is the key for one tuple-element
+     * @return value of element
+     * @throws IllegalArgumentException when identifier don't exist or is a boolean slot
+     */
+    public double getDouble(String identifier) {
+        int slot = slotOf(identifier);
+        Class<?> type = schema.getType(slot);
+        if(type == double.class) {
+            return Double.longBitsToDouble(bitsAt(slot));
+        }
+        if(type == long.class || type == int.class) {
+            return bitsAt(slot);
+        }
+        if(type == Object.class) {
+            return ((Number) valueAt(slot)).doubleValue();
+        }
+        throw wrongType(slot, double.class);
+    }
+    
+    /**
+     * Get value of a boolean slot or of an object slot storing a boolean
+     * @param identifier is the key for one tuple-element
+     * @return value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public boolean getBoolean(String identifier) {
+        int slot = slotOf(identifier);
+        Class<?> type = schema.getType(slot);
+        if(type == boolean.class) {
+            return bitsAt(slot) != 0;
+        }
+        if(type == Object.class) {
+            return (Boolean) valueAt(slot);
+        }
+        throw wrongType(slot, boolean.class);
+    }
+    
+    /**
+     * Set value based on identifier, values to primitive slots are unboxed
+     * @param identifier is the key for one tuple-element
+     * @param value new value of element
+     * @throws IllegalArgumentException when identifier don't exist or value don't fit a primitive slot
+     */
+    public void setValue(String identifier, Object value) {
+        setSlot(slotOf(identifier), value);
+    }
+    
+    /**
+     * Set value based on position in schema, so the identifier is not looked up,
+     * values to primitive slots are unboxed
+     * @param slot index of slot in schema
+     * @param value new value of element
+     * @throws IllegalArgumentException when value don't fit a primitive slot
+     * @throws IndexOutOfBoundsException when slot don't exist in schema
+     */
+    public void setValue(int slot, Object value) {
+        if(slot < 0 || slot >= schema.size()) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " don't exist in tuple " + schema);
+        }
+        setSlot(slot, value);
+    }
+    
+    /**
+     * Set value of an int slot or of an object slot
+     * @param identifier is the key for one tuple-element
+     * @param value new value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public void setInt(String identifier, int value) {
+        int slot = slotOf(identifier);
+        if(schema.getType(slot) == int.class) {
+            setBits(slot, value);
+        } else {
+            setSlot(slot, value);
+        }
+    }
+    
+    /**
+     * Set value of a long slot or of an object slot
+     * @param identifier is the key for one tuple-element
+     * @param value new value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public void setLong(String identifier, long value) {
+        int slot = slotOf(identifier);
+        if(schema.getType(slot) == long.class) {
+            setBits(slot, value);
+        } else {
+            setSlot(slot, value);
+        }
+    }
+    
+    /**
+     * Set value of a double slot or of an object slot
+     * @param identifier is the key for one tuple-element
+     * @param value new value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public void setDouble(String identifier, double value) {
+        int slot = slotOf(identifier);
+        if(schema.getType(slot) == double.class) {
+            setBits(slot, Double.doubleToRawLongBits(value));
+        } else {
+            setSlot(slot, value);
+        }
+    }
+    
+    /**
+     * Set value of a boolean slot or of an object slot
+     * @param identifier is the key for one tuple-element
+     * @param value new value of element
+     * @throws IllegalArgumentException when identifier don't exist or is of another primitive type
+     */
+    public void setBoolean(String identifier, boolean value) {
+        int slot = slotOf(identifier);
+        if(schema.getType(slot) == boolean.class) {
+            setBits(slot, value ? 1 : 0);
+        } else {
+            setSlot(slot, value);
+        }
+    }
+    
+    /**
+     * Get slot of identifier
+     * @param identifier is the key for one tuple-element
+     * @return slot index
+     * @throws IllegalArgumentException when identifier don't exist
+     */
+    private int slotOf(String identifier) {
+        int slot = schema.indexOf(identifier);
+        if(slot < 0) {
+            throw new IllegalArgumentException("Identifier " + identifier + " don't exist in tuple " + schema);
+        }
+        return slot;
+    }
+    
+    private IllegalArgumentException wrongType(int slot, Class<?> requested) {
+        return new IllegalArgumentException("Element " + schema.getIdentifier(slot) + " is of type " 
+                                            + schema.getType(slot).getName() + " and not " + requested.getName());
+    }
+    
+    /**
+     * Get element of slot
+     * @param slot index of slot in schema
+     * @return element of slot
+     */
+    TupleElement elementAt(int slot) {
+        String identifier = schema.getIdentifier(slot);
+        Class<?> type = schema.getType(slot);
+        if(type == Object.class) {
+            return new TupleElement(identifier, valueAt(slot));
+        }
+        
+        long bits = bitsAt(slot);
+        if(type == int.class)    { return new IntTupleElement(identifier, (int) bits); }
+        if(type == long.class)   { return new LongTupleElement(identifier, bits); }
+        if(type == double.class) { return new DoubleTupleElement(identifier, Double.longBitsToDouble(bits)); }
+        return new BooleanTupleElement(identifier, bits != 0);
     }
     
     /**
-     * Instance an object of this tuple on the type this class is of
+     * Get value stored in slot, values of primitive slots are boxed
+     * @param slot index of slot in schema
+     * @return value of slot
+     */
+    Object valueAt(int slot) {
+        Class<?> type = schema.getType(slot);
+        return type == Object.class ? objectAt(slot) : box(type, bitsAt(slot));
+    }
+    
+    /**
+     * Set value of slot, values to primitive slots are unboxed
+     * @param slot index of slot in schema
+     * @param value new value of slot
+     * @throws IllegalArgumentException when value don't fit a primitive slot
+     */
+    void setSlot(int slot, Object value) {
+        Class<?> type = schema.getType(slot);
+        if(type == Object.class) {
+            setObject(slot, value);
+        } else {
+            setBits(slot, unbox(schema, slot, value));
+        }
+    }
+    
+    /**
+     * Get value of an object slot
+     * @param slot index of an object slot in schema
+     * @return value of slot
+     */
+    Object objectAt(int slot) {
+        return values[schema.offsetOf(slot)];
+    }
+    
+    /**
+     * Set value of an object slot
+     * @param slot index of an object slot in schema
+     * @param value new value of slot
+     */
+    void setObject(int slot, Object value) {
+        values[schema.offsetOf(slot)] = value;
+    }
+    
+    /**
+     * Get raw value of a primitive slot, int and boolean values are stored as long 
+     * and double values as their raw long bits
+     * @param slot index of a primitive slot in schema
+     * @return raw value of slot
+     */
+    long bitsAt(int slot) {
+        return primitives[schema.offsetOf(slot)];
+    }
+    
+    /**
+     * Set raw value of a primitive slot
+     * @param slot index of a primitive slot in schema
+     * @param bits raw value of slot
+     */
+    void setBits(int slot, long bits) {
+        primitives[schema.offsetOf(slot)] = bits;
+    }
+    
+    /**
+     * Box raw value of a primitive slot
+     * @param type primitive type of slot
+     * @param bits raw value of slot
+     * @return boxed value
+     */
+    static Object box(Class<?> type, long bits) {
+        if(type == int.class)    { return (int) bits; }
+        if(type == long.class)   { return bits; }
+        if(type == double.class) { return Double.longBitsToDouble(bits); }
+        return bits != 0;
+    }
+    
+    /**
+     * Unbox value to raw value of a primitive slot
+     * @param schema schema of slot
+     * @param slot index of a primitive slot in schema
+     * @param value boxed value
+     * @return raw value of slot
+     * @throws IllegalArgumentException when value don't fit slot
+     */
+    static long unbox(TupleSchema schema, int slot, Object value) {
+        Class<?> type = schema.getType(slot);
+        if(type == int.class && value instanceof Integer) {
+            return (Integer) value;
+        } 
+        if(type == long.class && (value instanceof Long || value instanceof Integer)) {
+            return ((Number) value).longValue();
+        } 
+        if(type == double.class && value instanceof Number) {
+            return Double.doubleToRawLongBits(((Number) value).doubleValue());
+        } 
+        if(type == boolean.class && value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } 
+        throw new IllegalArgumentException("Value " + value + " can't be stored in element " 
+                                           + schema.getIdentifier(slot) + " of type " + type.getName());
+    }
+    
+    /**
+     * Set value of slot from an element without boxing values of primitive elements
+     * @param slot index of slot in schema
+     * @param element element to take value from, may be null
+     */
+    private void setSlot(int slot, TupleElement element) {
+        if(element instanceof IntTupleElement) {
+            setBits(slot, ((IntTupleElement) element).intValue);
+        } else if(element instanceof LongTupleElement) {
+            setBits(slot, ((LongTupleElement) element).longValue);
+        } else if(element instanceof DoubleTupleElement) {
+            setBits(slot, Double.doubleToRawLongBits(((DoubleTupleElement) element).doubleValue));
+        } else if(element instanceof BooleanTupleElement) {
+            setBits(slot, ((BooleanTupleElement) element).booleanValue ? 1 : 0);
+        } else {
+            setObject(slot, element == null ? null : element.value);
+        }
+    }
+    
+    /**
+     * Instance an object of this tuple on the type this class is of,
+     * through a constructor that takes the values of identifiers in identical order
      * @param identifiers
      * @return object of type T or null if T type is unknown
      * @throws ReflectiveOperationException
@@ -118,46 +620,28 @@ public class Tuple <T> {
     public T toObject(String ... identifiers) throws ReflectiveOperationException,
                                                      IllegalArgumentException { 
         //When tuple type is uncertain
-        if(this.tupleType == null) {
+        if(this.tupleClass == null) {
             return null;
         }
         
-        List <Class> constructorClasses  = new ArrayList();  //To store class types to use in constructor 
-        List <Object> constructorValues  = new ArrayList();  //To store actual values to constructor initialisation
-        
-        //Retrive tuple's that match constructor in identical order
-        for(String id : identifiers) {
-            Object value = getElement(id).value;
-            constructorClasses.add( value.getClass() );
-            constructorValues.add( value ); 
-        }
-        
-        //Create a constructor reference to object of type T (exception is thrown if it can't)
-        Constructor<T> cons = tupleClass.getDeclaredConstructor(constructorClasses.toArray(new Class[constructorClasses.size()]));
-       
-        //return a new instance of specific variable
-        return  cons.newInstance(constructorValues.toArray());
+        //Constructor is resolved once per class and identifiers and then reused
+        TupleObjectFactory<T> factory = TupleObjectFactory.of(tupleClass, schema, identifiers);
+        return factory.create(this);
     }
     
     /**
      * Gives a string representation of this Tuple
-     * @return A JSON style output of tuple in string format
+     * @return A JSON output of tuple in string format
      */
     @Override
     public String toString() {
         StringBuilder strb = new StringBuilder();
-        strb.append("{");
-        for(  TupleElement element  : getElements() ) {
-            
-            //Add comma after each element
-            if(strb.length() > 1) {
-               strb.append(",");
-            }
-            //Add element to string build
-            strb.append(String.format(" %s : %s " , element.identifier, element.value.toString()) );    
-        } 
-        strb.append("}");
-        
+        try {
+            new TupleJsonWriter().write(this, strb);
+        } catch(IOException e) {
+            //StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
         return strb.toString();
     }
     
@@ -0,0 +1,398 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This is a batch of tuples of one schema that is stored column by column,
+ * each identifier has one column that is a primitive array for primitive slots
+ * and an object array for object slots.
+ *
+ * Rows are given as tuple views that read and write directly in the columns,
+ * so a batch has almost no overhead per row compared to a list of tuples.
+ * A batch is not thread safe.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ * @param <T> type of object rows represent
+ */
+public class TupleBatch <T> implements Iterable<Tuple<T>> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final TupleSchema schema;
+    private final Class<T> tupleClass;
+
+    /**One column per slot, int[], long[], double[], boolean[] or Object[] depending on slot type*/
+    private final Object[] columns;
+    private int size;
+
+    /**
+     * Define a batch of tuples with unknown object type
+     * @param schema schema of all rows
+     */
+    public TupleBatch(TupleSchema schema) {
+        this(null, schema, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Define a batch of tuples that are of class T
+     * @param tupleClass a class that rows should be of
+     * @param schema schema of all rows
+     */
+    public TupleBatch(Class<T> tupleClass, TupleSchema schema) {
+        this(tupleClass, schema, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Define a batch of tuples that are of class T with room for a number of rows
+     * @param tupleClass a class that rows should be of or null
+     * @param schema schema of all rows
+     * @param capacity number of rows to allocate room for
+     */
+    public TupleBatch(Class<T> tupleClass, TupleSchema schema, int capacity) {
+        this.schema = schema;
+        this.tupleClass = tupleClass;
+        this.columns = new Object[schema.size()];
+
+        for(int slot = 0; slot < columns.length; slot++) {
+            Class<?> type = schema.getType(slot);
+            if(type == int.class) {
+                columns[slot] = new int[capacity];
+            } else if(type == long.class) {
+                columns[slot] = new long[capacity];
+            } else if(type == double.class) {
+                columns[slot] = new double[capacity];
+            } else if(type == boolean.class) {
+                columns[slot] = new boolean[capacity];
+            } else {
+                columns[slot] = new Object[capacity];
+            }
+        }
+    }
+
+    /**
+     * Get the shared schema of all rows
+     * @return schema of batch
+     */
+    public TupleSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Number of rows in batch
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a row at the end of batch
+     * @param values one value per slot in schema, values to primitive slots are unboxed
+     * @return index of added row
+     * @throws IllegalArgumentException when number of values don't match schema or a value don't fit its slot
+     */
+    public int add(Object... values) {
+        if(values.length != schema.size()) {
+            throw new IllegalArgumentException("Row of schema " + schema + " needs " + schema.size() + " values but got " + values.length);
+        }
+        //Every value is unboxed before the row is added so a rejected row leaves batch as it was
+        long[] bits = new long[values.length];
+        for(int slot = 0; slot < values.length; slot++) {
+            if(schema.isPrimitive(slot)) {
+                bits[slot] = Tuple.unbox(schema, slot, values[slot]);
+            }
+        }
+        int row = newRow();
+        for(int slot = 0; slot < values.length; slot++) {
+            if(schema.isPrimitive(slot)) {
+                setBits(row, slot, bits[slot]);
+            } else {
+                ((Object[]) columns[slot])[row] = values[slot];
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Adds a copy of tuple at the end of batch
+     * @param tuple tuple of the same schema as batch
+     * @return index of added row
+     * @throws IllegalArgumentException when tuple is of another schema
+     */
+    public int add(Tuple<?> tuple) {
+        if(tuple.getSchema() != schema) {
+            throw new IllegalArgumentException("Tuple of schema " + tuple.getSchema() + " can't be added to batch of " + schema);
+        }
+        int row = newRow();
+        for(int slot = 0; slot < columns.length; slot++) {
+            if(schema.isPrimitive(slot)) {
+                setBits(row, slot, tuple.bitsAt(slot));
+            } else {
+                ((Object[]) columns[slot])[row] = tuple.objectAt(slot);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Adds an empty row at the end of batch that can be filled through its view
+     * @return view of added row
+     */
+    public Tuple<T> addRow() {
+        return get(newRow());
+    }
+
+    /**
+     * Get a view of a row, the view reads and writes directly in the columns of batch
+     * @param row index of row
+     * @return tuple view of row
+     * @throws IndexOutOfBoundsException when row don't exist
+     */
+    public Tuple<T> get(int row) {
+        if(row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of batch with " + size + " rows");
+        }
+        return new Row(row);
+    }
+
+    /**
+     * Removes all rows but keeps the allocated columns
+     */
+    public void clear() {
+        for(Object column : columns) {
+            if(column instanceof Object[]) {
+                Arrays.fill((Object[]) column, 0, size, null);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Get column of an int slot, only the first {@link #size()} values are rows of batch
+     * and the array is replaced when batch grows
+     * @param identifier is the key for one tuple-element
+     * @return backing column of slot
+     */
+    public int[] getIntColumn(String identifier) {
+        return (int[]) column(identifier, int.class);
+    }
+
+    /**
+     * Get column of a long slot, only the first {@link #size()} values are rows of batch
+     * and the array is replaced when batch grows
+     * @param identifier is the key for one tuple-element
+     * @return backing column of slot
+     */
+    public long[] getLongColumn(String identifier) {
+        return (long[]) column(identifier, long.class);
+    }
+
+    /**
+     * Get column of a double slot, only the first {@link #size()} values are rows of batch
+     * and the array is replaced when batch grows
+     * @param identifier is the key for one tuple-element
+     * @return backing column of slot
+     */
+    public double[] getDoubleColumn(String identifier) {
+        return (double[]) column(identifier, double.class);
+    }
+
+    /**
+     * Get column of a boolean slot, only the first {@link #size()} values are rows of batch
+     * and the array is replaced when batch grows
+     * @param identifier is the key for one tuple-element
+     * @return backing column of slot
+     */
+    public boolean[] getBooleanColumn(String identifier) {
+        return (boolean[]) column(identifier, boolean.class);
+    }
+
+    /**
+     * Get column of an object slot, only the first {@link #size()} values are rows of batch
+     * and the array is replaced when batch grows
+     * @param identifier is the key for one tuple-element
+     * @return backing column of slot
+     */
+    public Object[] getColumn(String identifier) {
+        return (Object[]) column(identifier, Object.class);
+    }
+
+    /**
+     * Instance one object of type T per row, through a constructor that takes
+     * the values of identifiers in identical order.
+     * The constructor is resolved once for the whole batch
+     * @param identifiers
+     * @return objects of type T in row order or null if T type is unknown
+     * @throws ReflectiveOperationException
+     * @throws IllegalArgumentException when an identifier don't exist
+     */
+    public List<T> toObjects(String... identifiers) throws ReflectiveOperationException,
+                                                           IllegalArgumentException {
+        //When tuple type is uncertain
+        if(tupleClass == null) {
+            return null;
+        }
+
+        TupleObjectFactory<T> factory = TupleObjectFactory.of(tupleClass, schema, identifiers);
+        int[] slots = new int[identifiers.length];
+        for(int i = 0; i < identifiers.length; i++) {
+            slots[i] = schema.indexOf(identifiers[i]);
+        }
+
+        //Factory don't keep arguments so the same array is used for all rows
+        Object[] arguments = new Object[slots.length];
+        List<T> objects = new ArrayList(size);
+        for(int row = 0; row < size; row++) {
+            for(int i = 0; i < slots.length; i++) {
+                arguments[i] = valueAt(row, slots[i]);
+            }
+            objects.add(factory.newInstance(arguments));
+        }
+        return objects;
+    }
+
+    /**
+     * Iterates over views of all rows
+     * @return iterator of row views
+     */
+    @Override
+    public Iterator<Tuple<T>> iterator() {
+        return new Iterator<Tuple<T>>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public Tuple<T> next() {
+                if(row >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new Row(row++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Rows can't be removed from a batch");
+            }
+        };
+    }
+
+    /**
+     * Get column of identifier and check its type
+     */
+    private Object column(String identifier, Class<?> type) {
+        int slot = schema.indexOf(identifier);
+        if(slot < 0) {
+            throw new IllegalArgumentException("Identifier " + identifier + " don't exist in batch " + schema);
+        }
+        if(schema.getType(slot) != type) {
+            throw new IllegalArgumentException("Column " + identifier + " is of type " + schema.getType(slot).getName()
+                                               + " and not " + type.getName());
+        }
+        return columns[slot];
+    }
+
+    /**
+     * Makes room for one more row
+     * @return index of new row
+     */
+    private int newRow() {
+        if(columns.length > 0 && size == capacity()) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+            for(int slot = 0; slot < columns.length; slot++) {
+                columns[slot] = grow(columns[slot], capacity);
+            }
+        }
+        return size++;
+    }
+
+    private int capacity() {
+        Object column = columns[0];
+        if(column instanceof int[])     { return ((int[]) column).length; }
+        if(column instanceof long[])    { return ((long[]) column).length; }
+        if(column instanceof double[])  { return ((double[]) column).length; }
+        if(column instanceof boolean[]) { return ((boolean[]) column).length; }
+        return ((Object[]) column).length;
+    }
+
+    private static Object grow(Object column, int capacity) {
+        if(column instanceof int[])     { return Arrays.copyOf((int[]) column, capacity); }
+        if(column instanceof long[])    { return Arrays.copyOf((long[]) column, capacity); }
+        if(column instanceof double[])  { return Arrays.copyOf((double[]) column, capacity); }
+        if(column instanceof boolean[]) { return Arrays.copyOf((boolean[]) column, capacity); }
+        return Arrays.copyOf((Object[]) column, capacity);
+    }
+
+    /**
+     * Get value of a cell, values of primitive slots are boxed
+     */
+    private Object valueAt(int row, int slot) {
+        Class<?> type = schema.getType(slot);
+        return type == Object.class ? ((Object[]) columns[slot])[row] : Tuple.box(type, bitsAt(row, slot));
+    }
+
+    /**
+     * Get raw value of a primitive cell in the same format as {@link Tuple#bitsAt(int)}
+     */
+    private long bitsAt(int row, int slot) {
+        Object column = columns[slot];
+        if(column instanceof int[])    { return ((int[]) column)[row]; }
+        if(column instanceof long[])   { return ((long[]) column)[row]; }
+        if(column instanceof double[]) { return Double.doubleToRawLongBits(((double[]) column)[row]); }
+        return ((boolean[]) column)[row] ? 1 : 0;
+    }
+
+    /**
+     * Set raw value of a primitive cell in the same format as {@link Tuple#setBits(int, long)}
+     */
+    private void setBits(int row, int slot, long bits) {
+        Object column = columns[slot];
+        if(column instanceof int[]) {
+            ((int[]) column)[row] = (int) bits;
+        } else if(column instanceof long[]) {
+            ((long[]) column)[row] = bits;
+        } else if(column instanceof double[]) {
+            ((double[]) column)[row] = Double.longBitsToDouble(bits);
+        } else {
+            ((boolean[]) column)[row] = bits != 0;
+        }
+    }
+
+    /**
+     * View of one row that reads and writes directly in the columns of batch
+     */
+    private final class Row extends Tuple<T> {
+        private final int row;
+
+        Row(int row) {
+            super(tupleClass, schema, null, null);
+            this.row = row;
+        }
+
+        @Override
+        Object objectAt(int slot) {
+            return ((Object[]) columns[slot])[row];
+        }
+
+        @Override
+        void setObject(int slot, Object value) {
+            ((Object[]) columns[slot])[row] = value;
+        }
+
+        @Override
+        long bitsAt(int slot) {
+            return TupleBatch.this.bitsAt(row, slot);
+        }
+
+        @Override
+        void setBits(int slot, long bits) {
+            TupleBatch.this.setBits(row, slot, bits);
+        }
+    }
+}
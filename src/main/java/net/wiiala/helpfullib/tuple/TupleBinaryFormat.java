@@ -0,0 +1,101 @@
+package net.wiiala.helpfullib.tuple;
+
+/**
+ * Layout of the compact binary tuple format shared by {@link TupleBinaryWriter} and {@link TupleBinaryReader}.
+ *
+ * A file starts with a header holding the schema once: magic number, version, 
+ * number of slots and then type code and UTF-8 identifier of each slot.
+ * Each row then follows as: total row length, fixed width values of all primitive slots,
+ * one offset per object slot relative to start of row and at last the tagged values of 
+ * all object slots. All numbers are big endian.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class TupleBinaryFormat {
+
+    static final int MAGIC = 0x48544C31; //"HTL1"
+    static final byte VERSION = 1;
+
+    /**Slot type codes of header*/
+    static final byte TYPE_OBJECT = 0;
+    static final byte TYPE_INT = 1;
+    static final byte TYPE_LONG = 2;
+    static final byte TYPE_DOUBLE = 3;
+    static final byte TYPE_BOOLEAN = 4;
+
+    /**Tags of values stored in object slots*/
+    static final byte TAG_NULL = 0;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_INT = 2;
+    static final byte TAG_LONG = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_BOOLEAN = 5;
+
+    /**Position of each slot within a row, value for primitive slots and offset entry for object slots*/
+    private final int[] positions;
+    private final int fixedLength;
+
+    /**
+     * Compute the row layout of a schema
+     * @param schema schema of rows
+     */
+    TupleBinaryFormat(TupleSchema schema) {
+        this.positions = new int[schema.size()];
+
+        //Row length is stored first
+        int position = 4;
+        for(int slot = 0; slot < schema.size(); slot++) {
+            if(schema.isPrimitive(slot)) {
+                positions[slot] = position;
+                position += widthOf(schema.getType(slot));
+            }
+        }
+        for(int slot = 0; slot < schema.size(); slot++) {
+            if(!schema.isPrimitive(slot)) {
+                positions[slot] = position;
+                position += 4;
+            }
+        }
+        this.fixedLength = position;
+    }
+
+    /**
+     * Position of slot relative to start of row
+     * @param slot index of slot
+     * @return position of value for primitive slots and of offset entry for object slots
+     */
+    int positionOf(int slot) {
+        return positions[slot];
+    }
+
+    /**
+     * Number of bytes of a row before the values of object slots
+     */
+    int fixedLength() {
+        return fixedLength;
+    }
+
+    static int widthOf(Class<?> type) {
+        if(type == int.class)     { return 4; }
+        if(type == boolean.class) { return 1; }
+        return 8;
+    }
+
+    static byte typeCode(Class<?> type) {
+        if(type == int.class)     { return TYPE_INT; }
+        if(type == long.class)    { return TYPE_LONG; }
+        if(type == double.class)  { return TYPE_DOUBLE; }
+        if(type == boolean.class) { return TYPE_BOOLEAN; }
+        return TYPE_OBJECT;
+    }
+
+    static Class<?> typeOf(byte code) {
+        switch(code) {
+            case TYPE_INT:     return int.class;
+            case TYPE_LONG:    return long.class;
+            case TYPE_DOUBLE:  return double.class;
+            case TYPE_BOOLEAN: return boolean.class;
+            case TYPE_OBJECT:  return Object.class;
+            default: throw new IllegalArgumentException("Unknown slot type " + code);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class reads a file written by {@link TupleBinaryWriter} through a memory-mapped
+ * file channel. Tuples are given as read-only views that read their values directly
+ * from the mapped file when asked for, so a file can be scanned without copying
+ * rows onto the heap.
+ *
+ * The file is mapped in windows of at most one gigabyte so files of any size can be read.
+ * Views stay valid after the reader has moved on but the reader itself is not thread safe.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ * @param <T> type of object tuples represent
+ */
+public class TupleBinaryReader <T> implements Iterable<Tuple<T>>, Closeable {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final Class<T> tupleClass;
+    private final TupleSchema schema;
+    private final TupleBinaryFormat format;
+    private final long dataStart;
+
+    /**
+     * Open a file of tuples with unknown object type
+     * @param file file to read
+     * @throws IOException when file can't be read or is not a tuple file
+     * @throws InvalidTupleException when header holds same identifier several times
+     */
+    public TupleBinaryReader(Path file) throws IOException, InvalidTupleException {
+        this(null, file);
+    }
+
+    /**
+     * Open a file of tuples that are of class T
+     * @param tupleClass a class that tuples should be of or null
+     * @param file file to read
+     * @throws IOException when file can't be read or is not a tuple file
+     * @throws InvalidTupleException when header holds same identifier several times
+     */
+    public TupleBinaryReader(Class<T> tupleClass, Path file) throws IOException, InvalidTupleException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.tupleClass = tupleClass;
+
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), WINDOW_SIZE));
+            if(header.remaining() < 9 || header.getInt() != TupleBinaryFormat.MAGIC) {
+                throw new IOException(file + " is not a tuple file");
+            }
+            if(header.get() != TupleBinaryFormat.VERSION) {
+                throw new IOException(file + " is of an unsupported version");
+            }
+
+            String[] identifiers = new String[header.getInt()];
+            Class<?>[] types = new Class<?>[identifiers.length];
+            for(int slot = 0; slot < identifiers.length; slot++) {
+                types[slot] = TupleBinaryFormat.typeOf(header.get());
+                int length = header.getInt();
+                identifiers[slot] = Utf8.decode(header, header.position(), length);
+                //Through Buffer so it links on Java 8 when compiled by a newer JDK
+                ((Buffer) header).position(header.position() + length);
+            }
+
+            this.schema = TupleSchema.of(identifiers, types);
+            this.format = new TupleBinaryFormat(schema);
+            this.dataStart = header.position();
+        } catch(IOException | InvalidTupleException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the shared schema of all tuples in file
+     * @return schema of file
+     */
+    public TupleSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Iterates over views of all tuples in file from the start
+     * @return iterator of read-only tuple views
+     * @throws IllegalStateException from iterator when file can't be mapped or is corrupt
+     */
+    @Override
+    public Iterator<Tuple<T>> iterator() {
+        return new RowIterator();
+    }
+
+    /**
+     * Close file, views that are still referenced keep their mapping
+     * @throws IOException when closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Walks through rows and maps next window of file when a row don't fit in current window
+     */
+    private final class RowIterator implements Iterator<Tuple<T>> {
+        private final long size;
+        private long windowStart;
+        private ByteBuffer window;
+        private int position;
+
+        RowIterator() {
+            try {
+                this.size = channel.size();
+            } catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+            map(dataStart);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return windowStart + position < size;
+        }
+
+        @Override
+        public Tuple<T> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if(window.limit() - position < 4) {
+                map(windowStart + position);
+            }
+
+            int length = window.getInt(position);
+            if(length < format.fixedLength() || windowStart + position + length > size) {
+                throw new IllegalStateException("Corrupt row at byte " + (windowStart + position));
+            }
+            if(window.limit() - position < length) {
+                map(windowStart + position);
+                if(window.limit() < length) {
+                    throw new IllegalStateException("Row at byte " + windowStart + " is larger than " + WINDOW_SIZE + " bytes");
+                }
+            }
+
+            Tuple<T> row = new MappedTuple(window, position);
+            position += length;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Tuple file is read-only");
+        }
+
+        private void map(long start) {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, WINDOW_SIZE));
+                windowStart = start;
+                position = 0;
+            } catch(IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Read-only view of one row that reads values directly from the mapped file
+     */
+    private final class MappedTuple extends Tuple<T> {
+        private final ByteBuffer window;
+        private final int start;
+
+        MappedTuple(ByteBuffer window, int start) {
+            super(tupleClass, schema, null, null);
+            this.window = window;
+            this.start = start;
+        }
+
+        @Override
+        Object objectAt(int slot) {
+            int position = start + window.getInt(start + format.positionOf(slot));
+            switch(window.get(position)) {
+                case TupleBinaryFormat.TAG_NULL:    return null;
+                case TupleBinaryFormat.TAG_STRING:  return Utf8.decode(window, position + 5, window.getInt(position + 1));
+                case TupleBinaryFormat.TAG_INT:     return window.getInt(position + 1);
+                case TupleBinaryFormat.TAG_LONG:    return window.getLong(position + 1);
+                case TupleBinaryFormat.TAG_DOUBLE:  return window.getDouble(position + 1);
+                case TupleBinaryFormat.TAG_BOOLEAN: return window.get(position + 1) != 0;
+                default: throw new IllegalStateException("Corrupt value of " + schema.getIdentifier(slot));
+            }
+        }
+
+        @Override
+        void setObject(int slot, Object value) {
+            throw new UnsupportedOperationException("Tuple of file is read-only");
+        }
+
+        @Override
+        long bitsAt(int slot) {
+            int position = start + format.positionOf(slot);
+            Class<?> type = schema.getType(slot);
+            if(type == int.class)     { return window.getInt(position); }
+            if(type == boolean.class) { return window.get(position); }
+            return window.getLong(position);
+        }
+
+        @Override
+        void setBits(int slot, long bits) {
+            throw new UnsupportedOperationException("Tuple of file is read-only");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class writes tuples of one schema in a compact binary format where the schema
+ * is written once as a header followed by one row per tuple, see {@link TupleBinaryReader}
+ * for reading them back.
+ * 
+ * Object slots can hold null, strings, integers, longs, doubles and booleans.
+ * A writer is not thread safe.
+ *
+ * Buffers are moved through {@link Buffer} since ByteBuffer overrides position, flip and clear
+ * from Java 9, classes compiled for Java 7 by a newer JDK would otherwise not link on Java 7 and 8.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class TupleBinaryWriter implements Closeable, Flushable {
+
+    private static final int FLUSH_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final TupleSchema schema;
+    private final TupleBinaryFormat format;
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a writer and writes the header of schema
+     * @param out stream to write to
+     * @param schema schema of all tuples to write
+     * @throws IOException when header can't be written
+     */
+    public TupleBinaryWriter(OutputStream out, TupleSchema schema) throws IOException {
+        this(Channels.newChannel(out), schema);
+    }
+
+    /**
+     * Creates a writer and writes the header of schema
+     * @param channel channel to write to
+     * @param schema schema of all tuples to write
+     * @throws IOException when header can't be written
+     */
+    public TupleBinaryWriter(WritableByteChannel channel, TupleSchema schema) throws IOException {
+        this.channel = channel;
+        this.schema = schema;
+        this.format = new TupleBinaryFormat(schema);
+        this.buffer = ByteBuffer.allocate(FLUSH_SIZE * 2);
+
+        buffer.putInt(TupleBinaryFormat.MAGIC);
+        buffer.put(TupleBinaryFormat.VERSION);
+        buffer.putInt(schema.size());
+        for(int slot = 0; slot < schema.size(); slot++) {
+            String identifier = schema.getIdentifier(slot);
+            ensure(5 + Utf8.length(identifier));
+            buffer.put(TupleBinaryFormat.typeCode(schema.getType(slot)));
+            buffer.putInt(Utf8.length(identifier));
+            Utf8.encode(identifier, 0, identifier.length(), buffer);
+        }
+    }
+
+    /**
+     * Write tuple as one row
+     * @param tuple tuple of the schema of this writer
+     * @throws IOException when writing fails
+     * @throws IllegalArgumentException when tuple is of another schema or holds a value that can't be written
+     */
+    public void write(Tuple<?> tuple) throws IOException {
+        if(tuple.getSchema() != schema) {
+            throw new IllegalArgumentException("Tuple of schema " + tuple.getSchema() + " can't be written as " + schema);
+        }
+
+        ensure(format.fixedLength());
+        int start = buffer.position();
+        ((Buffer) buffer).position(start + format.fixedLength());
+
+        try {
+            for(int slot = 0; slot < schema.size(); slot++) {
+                int position = start + format.positionOf(slot);
+                Class<?> type = schema.getType(slot);
+                if(type == Object.class) {
+                    buffer.putInt(position, buffer.position() - start);
+                    writeValue(schema.getIdentifier(slot), tuple.objectAt(slot));
+                } else if(type == int.class) {
+                    buffer.putInt(position, (int) tuple.bitsAt(slot));
+                } else if(type == boolean.class) {
+                    buffer.put(position, (byte) tuple.bitsAt(slot));
+                } else {
+                    buffer.putLong(position, tuple.bitsAt(slot));
+                }
+            }
+        } catch(RuntimeException e) {
+            //A rejected row is dropped so it is never flushed half written
+            ((Buffer) buffer).position(start);
+            throw e;
+        }
+        buffer.putInt(start, buffer.position() - start);
+
+        if(buffer.position() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    private void writeValue(String identifier, Object value) {
+        if(value == null) {
+            ensure(1);
+            buffer.put(TupleBinaryFormat.TAG_NULL);
+        } else if(value instanceof CharSequence) {
+            CharSequence string = (CharSequence) value;
+            int length = Utf8.length(string);
+            ensure(5 + length);
+            buffer.put(TupleBinaryFormat.TAG_STRING);
+            buffer.putInt(length);
+            Utf8.encode(string, 0, string.length(), buffer);
+        } else if(value instanceof Integer) {
+            ensure(5);
+            buffer.put(TupleBinaryFormat.TAG_INT);
+            buffer.putInt((Integer) value);
+        } else if(value instanceof Long) {
+            ensure(9);
+            buffer.put(TupleBinaryFormat.TAG_LONG);
+            buffer.putLong((Long) value);
+        } else if(value instanceof Double) {
+            ensure(9);
+            buffer.put(TupleBinaryFormat.TAG_DOUBLE);
+            buffer.putDouble((Double) value);
+        } else if(value instanceof Boolean) {
+            ensure(2);
+            buffer.put(TupleBinaryFormat.TAG_BOOLEAN);
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        } else {
+            throw new IllegalArgumentException("Element " + identifier + " of type " + value.getClass().getName() + " can't be written");
+        }
+    }
+
+    /**
+     * Makes room for bytes in buffer, a row is always kept whole in buffer
+     * so buffer grows instead of flushing in the middle of a row
+     */
+    private void ensure(int bytes) {
+        if(buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            ((Buffer) buffer).flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Write all buffered rows to channel
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        ((Buffer) buffer).flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /**
+     * Write all buffered rows and close channel
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
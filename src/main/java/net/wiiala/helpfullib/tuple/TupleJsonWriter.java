@@ -0,0 +1,238 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * This class writes tuples as JSON objects straight into an Appendable, e.g. a
+ * StringBuilder or a Writer, or as UTF-8 into a ByteBuffer.
+ * Values are written in one pass without any intermediate strings, except for
+ * floating point values and objects that are neither numbers, booleans, strings nor tuples
+ * which are written through their string representation.
+ *
+ * A writer reuses an internal buffer and is therefore not thread safe,
+ * but one instance can be used to write any number of tuples.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class TupleJsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**Scratch space for digits of one integer*/
+    private final char[] digits = new char[20];
+
+    /**Current target, exactly one of them is set while a tuple is written*/
+    private Appendable appendable;
+    private Writer writer;
+    private ByteBuffer buffer;
+
+    /**
+     * Write tuple as a JSON object
+     * @param tuple tuple to write
+     * @param out target to write to
+     * @throws IOException when target fails
+     */
+    public void write(Tuple<?> tuple, Appendable out) throws IOException {
+        if(out instanceof Writer) {
+            this.writer = (Writer) out;
+        } else {
+            this.appendable = out;
+        }
+        try {
+            writeTuple(tuple);
+        } finally {
+            this.appendable = null;
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Write tuple as a UTF-8 encoded JSON object from current position of buffer
+     * @param tuple tuple to write
+     * @param out buffer to write to
+     * @throws java.nio.BufferOverflowException when buffer don't have room for tuple,
+     *         position of buffer is then where writing stopped
+     */
+    public void write(Tuple<?> tuple, ByteBuffer out) {
+        this.buffer = out;
+        try {
+            writeTuple(tuple);
+        } catch(IOException e) {
+            //Only appendable targets throw IOException
+            throw new IllegalStateException(e);
+        } finally {
+            this.buffer = null;
+        }
+    }
+
+    private void writeTuple(Tuple<?> tuple) throws IOException {
+        TupleSchema schema = tuple.getSchema();
+        put('{');
+        for(int slot = 0; slot < schema.size(); slot++) {
+            if(slot > 0) {
+                put(',');
+            }
+            writeString(schema.getIdentifier(slot));
+            put(':');
+
+            Class<?> type = schema.getType(slot);
+            if(type == Object.class) {
+                writeValue(tuple.objectAt(slot));
+            } else if(type == double.class) {
+                writeDouble(Double.longBitsToDouble(tuple.bitsAt(slot)));
+            } else if(type == boolean.class) {
+                writeBoolean(tuple.bitsAt(slot) != 0);
+            } else {
+                writeLong(tuple.bitsAt(slot));
+            }
+        }
+        put('}');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if(value == null) {
+            putAscii("null");
+        } else if(value instanceof CharSequence) {
+            writeString((CharSequence) value);
+        } else if(value instanceof Integer || value instanceof Long
+                  || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if(value instanceof Double || value instanceof Float) {
+            writeDouble(((Number) value).doubleValue());
+        } else if(value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if(value instanceof Tuple) {
+            writeTuple((Tuple) value);
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeBoolean(boolean value) throws IOException {
+        putAscii(value ? "true" : "false");
+    }
+
+    /**
+     * Write a double, JSON has no representation of NaN or infinity so they are written as null
+     */
+    private void writeDouble(double value) throws IOException {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            putAscii("null");
+        } else if(value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+        } else {
+            putAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Write digits of value from the end of scratch space, negative values are
+     * handled as negative so that Long.MIN_VALUE needs no special case
+     */
+    private void writeLong(long value) throws IOException {
+        int position = digits.length;
+        long negative = value < 0 ? value : -value;
+        do {
+            long next = negative / 10;
+            digits[--position] = (char) ('0' + (next * 10 - negative));
+            negative = next;
+        } while(negative != 0);
+
+        if(value < 0) {
+            digits[--position] = '-';
+        }
+        put(digits, position, digits.length - position);
+    }
+
+    /**
+     * Write a quoted and escaped string, runs of characters that don't need escaping
+     * are written as they are
+     */
+    private void writeString(CharSequence value) throws IOException {
+        put('"');
+        int start = 0;
+        int length = value.length();
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if(c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+
+            put(value, start, i);
+            start = i + 1;
+            put('\\');
+            switch(c) {
+                case '"':  put('"');  break;
+                case '\\': put('\\'); break;
+                case '\n': put('n');  break;
+                case '\r': put('r');  break;
+                case '\t': put('t');  break;
+                case '\b': put('b');  break;
+                case '\f': put('f');  break;
+                default:
+                    put('u');
+                    put('0');
+                    put('0');
+                    put(HEX[c >> 4]);
+                    put(HEX[c & 0xF]);
+            }
+        }
+        put(value, start, length);
+        put('"');
+    }
+
+    /**
+     * Write one ASCII character
+     */
+    private void put(char c) throws IOException {
+        if(buffer != null) {
+            buffer.put((byte) c);
+        } else if(writer != null) {
+            writer.write(c);
+        } else {
+            appendable.append(c);
+        }
+    }
+
+    /**
+     * Write a string only containing ASCII characters
+     */
+    private void putAscii(String value) throws IOException {
+        put(value, 0, value.length());
+    }
+
+    private void put(char[] chars, int offset, int length) throws IOException {
+        if(buffer != null) {
+            for(int i = offset; i < offset + length; i++) {
+                buffer.put((byte) chars[i]);
+            }
+        } else if(writer != null) {
+            writer.write(chars, offset, length);
+        } else {
+            for(int i = offset; i < offset + length; i++) {
+                appendable.append(chars[i]);
+            }
+        }
+    }
+
+    /**
+     * Write characters from start to end of value
+     */
+    private void put(CharSequence value, int start, int end) throws IOException {
+        if(start == end) {
+            return;
+        }
+        if(buffer != null) {
+            Utf8.encode(value, start, end, buffer);
+        } else if(writer != null && value instanceof String) {
+            writer.write((String) value, start, end - start);
+        } else if(writer != null) {
+            for(int i = start; i < end; i++) {
+                writer.write(value.charAt(i));
+            }
+        } else {
+            appendable.append(value, start, end);
+        }
+    }
+}
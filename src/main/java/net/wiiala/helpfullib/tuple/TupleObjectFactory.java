@@ -0,0 +1,237 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class creates objects of type T out of tuples of one schema.
+ * The constructor to use is resolved once per set of argument classes and kept
+ * as a method handle, so creating an object does no reflective lookup at all.
+ *
+ * Factories are cached per class, schema and identifier list and can be
+ * shared by several threads. The cache is kept with the class so neither the class
+ * nor its class loader is kept alive by this library.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ * @param <T> type of object factory creates
+ */
+public final class TupleObjectFactory<T> {
+
+    /**Created factories of each class*/
+    private static final ClassValue<ConcurrentMap<Key, TupleObjectFactory>> FACTORIES = new ClassValue<ConcurrentMap<Key, TupleObjectFactory>>() {
+        @Override
+        protected ConcurrentMap<Key, TupleObjectFactory> computeValue(Class<?> type) {
+            return new ConcurrentHashMap();
+        }
+    };
+
+    private final Class<T> objectClass;
+    private final TupleSchema schema;
+    private final int[] slots;
+
+    /**Resolved constructor of every set of argument classes*/
+    private final ConcurrentMap<List<Class<?>>, Binding> bindings = new ConcurrentHashMap();
+
+    /**Last used constructor, checked first since argument classes rarely change*/
+    private volatile Binding binding;
+
+    private TupleObjectFactory(Class<T> objectClass, TupleSchema schema, String[] identifiers) {
+        this.objectClass = objectClass;
+        this.schema = schema;
+        this.slots = new int[identifiers.length];
+
+        for(int i = 0; i < identifiers.length; i++) {
+            slots[i] = schema.indexOf(identifiers[i]);
+            if(slots[i] < 0) {
+                throw new IllegalArgumentException("Identifier " + identifiers[i] + " don't exist in tuple " + schema);
+            }
+        }
+    }
+
+    /**
+     * Get factory that creates objects of class through a constructor
+     * that takes the values of identifiers in identical order
+     * @param <T> type of object factory creates
+     * @param objectClass class of object to create
+     * @param schema schema of tuples that will be used
+     * @param identifiers identifiers of values to use as constructor arguments
+     * @return a shared factory
+     * @throws IllegalArgumentException when an identifier don't exist in schema
+     */
+    public static <T> TupleObjectFactory<T> of(Class<T> objectClass, TupleSchema schema, String... identifiers) {
+        ConcurrentMap<Key, TupleObjectFactory> factories = FACTORIES.get(objectClass);
+        Key key = new Key(schema, identifiers);
+        TupleObjectFactory<T> factory = factories.get(key);
+
+        if(factory == null) {
+            key = new Key(schema, identifiers.clone());
+            factory = new TupleObjectFactory(objectClass, schema, key.identifiers);
+            TupleObjectFactory<T> previous = factories.putIfAbsent(key, factory);
+            if(previous != null) {
+                factory = previous;
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Instance an object out of tuple
+     * @param tuple tuple of the schema this factory was created for
+     * @return object of type T
+     * @throws NoSuchMethodException when no constructor accepts the values
+     * @throws IllegalAccessException when this class is not allowed to use constructor
+     * @throws InvocationTargetException when constructor throws an exception
+     * @throws IllegalArgumentException when tuple is of another schema
+     */
+    public T create(Tuple<?> tuple) throws NoSuchMethodException,
+                                           IllegalAccessException,
+                                           InvocationTargetException {
+        if(tuple.getSchema() != schema) {
+            throw new IllegalArgumentException("Tuple of schema " + tuple.getSchema() + " can't be used with factory for " + schema);
+        }
+
+        Object[] arguments = new Object[slots.length];
+        for(int i = 0; i < slots.length; i++) {
+            arguments[i] = tuple.valueAt(slots[i]);
+        }
+        return newInstance(arguments);
+    }
+
+    /**
+     * Instance an object with given constructor arguments
+     * @param arguments values in constructor order, array is not kept
+     * @return object of type T
+     */
+    T newInstance(Object[] arguments) throws NoSuchMethodException,
+                                             IllegalAccessException,
+                                             InvocationTargetException {
+        Binding current = binding;
+        if(current == null || !current.isFor(arguments)) {
+            current = bindingOf(arguments);
+            binding = current;
+        }
+
+        Object instance;
+        try {
+            instance = current.constructor.invokeExact(arguments);
+        } catch(Error e) {
+            throw e;
+        } catch(Throwable e) {
+            //Argument classes are those of binding so the handle can't fail on them
+            throw new InvocationTargetException(e);
+        }
+        return objectClass.cast(instance);
+    }
+
+    /**
+     * Get binding of the classes of arguments, resolving it the first time they are used
+     */
+    private Binding bindingOf(Object[] arguments) throws NoSuchMethodException, IllegalAccessException {
+        Class<?>[] argumentClasses = new Class<?>[arguments.length];
+        for(int i = 0; i < arguments.length; i++) {
+            argumentClasses[i] = arguments[i] == null ? null : arguments[i].getClass();
+        }
+        List<Class<?>> key = Arrays.asList(argumentClasses);
+        Binding found = bindings.get(key);
+
+        if(found == null) {
+            found = resolve(argumentClasses, arguments);
+            Binding previous = bindings.putIfAbsent(key, found);
+            if(previous != null) {
+                found = previous;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the most specific constructor that accepts arguments of given classes
+     * @return a binding to constructor
+     */
+    private Binding resolve(Class<?>[] argumentClasses, Object[] arguments) throws NoSuchMethodException, IllegalAccessException {
+        Constructor<?>[] constructors = objectClass.getDeclaredConstructors();
+        List<Class<?>[]> candidates = new ArrayList(constructors.length);
+        for(Constructor<?> candidate : constructors) {
+            candidates.add(candidate.getParameterTypes());
+        }
+
+        int found;
+        try {
+            found = Overloads.mostSpecific(candidates, argumentClasses);
+        } catch(IllegalArgumentException e) {
+            throw new NoSuchMethodException("Constructor of " + objectClass.getName() + " is ambiguous: " + e.getMessage());
+        }
+        if(found < 0) {
+            throw new NoSuchMethodException("No constructor of " + objectClass.getName() + " accepts " + Arrays.toString(arguments));
+        }
+        return new Binding(constructors[found], argumentClasses);
+    }
+
+    /**
+     * A resolved constructor and a handle that takes all arguments as an array
+     */
+    private static final class Binding {
+        private final Class<?>[] argumentClasses;
+        private final MethodHandle constructor;
+
+        Binding(Constructor<?> constructor, Class<?>[] argumentClasses) throws IllegalAccessException {
+            Class<?>[] types = constructor.getParameterTypes();
+            this.argumentClasses = argumentClasses;
+            this.constructor = MethodHandles.lookup().unreflectConstructor(constructor)
+                                            .asType(MethodType.genericMethodType(types.length))
+                                            .asSpreader(Object[].class, types.length);
+        }
+
+        /**
+         * Checks without allocating if arguments are of the classes binding was resolved for
+         */
+        boolean isFor(Object[] arguments) {
+            if(arguments.length != argumentClasses.length) {
+                return false;
+            }
+            for(int i = 0; i < arguments.length; i++) {
+                if((arguments[i] == null ? null : arguments[i].getClass()) != argumentClasses[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cache key of a factory among factories of one class
+     */
+    private static final class Key {
+        private final TupleSchema schema;
+        private final String[] identifiers;
+        private final int hash;
+
+        Key(TupleSchema schema, String[] identifiers) {
+            this.schema = schema;
+            this.identifiers = identifiers;
+            this.hash = 31 * schema.hashCode() + Arrays.hashCode(identifiers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return schema == other.schema
+                    && Arrays.equals(identifiers, other.identifiers);
+        }
+    }
+}
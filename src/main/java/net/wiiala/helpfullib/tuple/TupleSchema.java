@@ -0,0 +1,273 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This is the shape of a tuple, it resolves every identifier to a slot index once
+ * so that all tuples with the same identifiers can share one schema and only store
+ * their values in a flat array.
+ *
+ * A slot is either an object slot or a primitive slot of type int, long, double
+ * or boolean, where primitive slots lets a tuple store its value without boxing.
+ *
+ * Schemas are immutable and cached, which means that tuples with identical
+ * identifiers and slot types in identical order will share the same schema instance.
+ * The cache only holds schemas weakly, so a schema that no tuple, batch or plan uses
+ * any longer is removed and identifiers given by callers don't grow the cache forever.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public final class TupleSchema {
+
+    /**Cache of all shared schemas, keyed by their identifiers and types of primitive schemas in slot order*/
+    private static final ConcurrentMap<List<?>, SchemaReference> SCHEMAS = new ConcurrentHashMap();
+
+    /**Schemas that are no longer used, their entries are removed from cache on next lookup*/
+    private static final ReferenceQueue<TupleSchema> UNUSED = new ReferenceQueue();
+
+    private final String[] identifiers;
+    private final Class<?>[] types;
+    private final List<String> identifierList;
+    private final Map<String, Integer> slots;
+
+    /**Position of each slot in the object or primitive storage of a tuple*/
+    private final int[] offsets;
+    private final int objectCount;
+    private final int primitiveCount;
+
+    /**
+     * Creates a schema where each identifier gets the slot of its position
+     * @param identifiers identifiers of tuple in slot order
+     * @param types slot types in slot order
+     * @throws InvalidTupleException when same identifier occur several times
+     */
+    private TupleSchema(String[] identifiers, Class<?>[] types) throws InvalidTupleException {
+        this.identifiers = identifiers;
+        this.types = types;
+        this.identifierList = Collections.unmodifiableList(Arrays.asList(identifiers));
+        this.slots = new HashMap(identifiers.length * 2);
+        this.offsets = new int[identifiers.length];
+
+        int objects = 0;
+        int primitives = 0;
+        for(int slot = 0; slot < identifiers.length; slot++) {
+            //Add slot and if identifier is not unique; throw exception
+            if(slots.put(identifiers[slot], slot) != null) {
+                throw new InvalidTupleException();
+            }
+            offsets[slot] = types[slot].isPrimitive() ? primitives++ : objects++;
+        }
+        this.objectCount = objects;
+        this.primitiveCount = primitives;
+    }
+
+    /**
+     * Get the shared schema for given identifiers where all slots are object slots
+     * @param identifiers identifiers of tuple in slot order
+     * @return a schema that is shared with all other tuples of the same identifiers
+     * @throws InvalidTupleException when same identifier occur several times
+     */
+    public static TupleSchema of(String... identifiers) throws InvalidTupleException {
+        TupleSchema schema = cached(Arrays.asList(identifiers));
+
+        if(schema == null) {
+            Class<?>[] types = new Class<?>[identifiers.length];
+            Arrays.fill(types, Object.class);
+            schema = of(identifiers, types);
+        }
+        return schema;
+    }
+
+    /**
+     * Get the shared schema for given identifiers and slot types.
+     * Slot type int, long, double and boolean gives a primitive slot and 
+     * any other type gives an object slot
+     * @param identifiers identifiers of tuple in slot order
+     * @param types type of each slot in slot order
+     * @return a schema that is shared with all other tuples of the same identifiers and types
+     * @throws InvalidTupleException when same identifier occur several times
+     */
+    public static TupleSchema of(String[] identifiers, Class<?>[] types) throws InvalidTupleException {
+        if(identifiers.length != types.length) {
+            throw new IllegalArgumentException("Got " + identifiers.length + " identifiers but " + types.length + " types");
+        }
+
+        //Copy so that caller can't change the shape afterwards
+        String[] identifierCopy = identifiers.clone();
+        Class<?>[] typeCopy = new Class<?>[types.length];
+        boolean primitive = false;
+        for(int slot = 0; slot < types.length; slot++) {
+            typeCopy[slot] = slotType(types[slot]);
+            primitive |= typeCopy[slot].isPrimitive();
+        }
+
+        //Schemas of only object slots are keyed by identifiers alone
+        List<Object> key = new ArrayList(Arrays.asList(identifierCopy));
+        if(primitive) {
+            key.addAll(Arrays.asList(typeCopy));
+        }
+
+        TupleSchema schema = cached(key);
+        if(schema == null) {
+            schema = new TupleSchema(identifierCopy, typeCopy);
+            SchemaReference reference = new SchemaReference(key, schema);
+            while(true) {
+                SchemaReference previous = SCHEMAS.putIfAbsent(key, reference);
+                if(previous == null) {
+                    break;
+                }
+                TupleSchema shared = previous.get();
+                if(shared != null) {
+                    return shared;
+                }
+                //Schema of entry is no longer used, replace it
+                if(SCHEMAS.replace(key, previous, reference)) {
+                    break;
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Get cached schema of key, entries of schemas that are no longer used are removed first
+     * @return schema or null if it isn't cached
+     */
+    private static TupleSchema cached(List<?> key) {
+        SchemaReference unused;
+        while((unused = (SchemaReference) UNUSED.poll()) != null) {
+            SCHEMAS.remove(unused.key, unused);
+        }
+        SchemaReference reference = SCHEMAS.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Weak reference to a cached schema that knows its key in cache
+     */
+    private static final class SchemaReference extends WeakReference<TupleSchema> {
+        private final List<?> key;
+
+        SchemaReference(List<?> key, TupleSchema schema) {
+            super(schema, UNUSED);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Get the slot type used for a type
+     * @param type requested type
+     * @return primitive type if it has a primitive slot otherwise Object
+     */
+    private static Class<?> slotType(Class<?> type) {
+        if(type == int.class || type == long.class || type == double.class || type == boolean.class) {
+            return type;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Get slot index of identifier
+     * @param identifier is the key for one tuple-element
+     * @return slot index or -1 if identifier don't exist in schema
+     */
+    public int indexOf(String identifier) {
+        Integer slot = slots.get(identifier);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Get identifier stored at slot
+     * @param slot index of slot
+     * @return identifier of slot
+     */
+    public String getIdentifier(int slot) {
+        return identifiers[slot];
+    }
+
+    /**
+     * Get type of slot
+     * @param slot index of slot
+     * @return int, long, double or boolean for primitive slots and Object for object slots
+     */
+    public Class<?> getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Checks if slot stores its value as a primitive
+     * @param slot index of slot
+     * @return true for primitive slots
+     */
+    public boolean isPrimitive(int slot) {
+        return types[slot].isPrimitive();
+    }
+
+    /**
+     * Get position of slot in object storage or in primitive storage of a tuple
+     * @param slot index of slot
+     * @return position in storage of slot type
+     */
+    int offsetOf(int slot) {
+        return offsets[slot];
+    }
+
+    /**
+     * Number of object slots in schema
+     */
+    int objectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Number of primitive slots in schema
+     */
+    int primitiveCount() {
+        return primitiveCount;
+    }
+
+    /**
+     * Finds all the identifiers in schema
+     * @return unmodifiable list of identifiers in slot order
+     */
+    public List<String> getIdentifiers() {
+        return identifierList;
+    }
+
+    /**
+     * Number of slots in schema
+     * @return number of identifiers
+     */
+    public int size() {
+        return identifiers.length;
+    }
+
+    /**
+     * Gives a string representation of this schema
+     * @return identifiers of schema with type of primitive slots
+     */
+    @Override
+    public String toString() {
+        StringBuilder strb = new StringBuilder();
+        strb.append("[");
+        for(int slot = 0; slot < identifiers.length; slot++) {
+            if(slot > 0) {
+                strb.append(", ");
+            }
+            strb.append(identifiers[slot]);
+            if(types[slot].isPrimitive()) {
+                strb.append(":").append(types[slot].getName());
+            }
+        }
+        strb.append("]");
+        return strb.toString();
+    }
+}
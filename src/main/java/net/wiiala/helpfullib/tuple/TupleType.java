@@ -0,0 +1,30 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a record-like class for which a typed tuple class is generated at compile time
+ * by {@link net.wiiala.helpfullib.tuple.processor.TupleTypeProcessor}.
+ *
+ * Every non-static field of the class becomes one element of the tuple in declaration order
+ * and the class must have a constructor that takes all fields in that order. 
+ * Fields that are private needs a getter, e.g. getName(), isValid() or name().
+ * The generated class has typed accessors, creates the object through a direct constructor
+ * call and converts to and from {@link Tuple}, so no reflection is used.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface TupleType {
+    
+    /**
+     * Simple name of generated class, by default name of annotated class followed by Tuple
+     * @return name of generated class
+     */
+    String name() default "";
+}
@@ -0,0 +1,99 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 encoding and decoding directly between character sequences and byte buffers
+ * without going through intermediate byte arrays
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * Number of bytes characters needs when encoded, unpaired surrogates are counted as '?'
+     * @param value characters to encode
+     * @return number of bytes
+     */
+    static int length(CharSequence value) {
+        int length = 0;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                length += 1;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if(Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encode characters from start to end of value into buffer, unpaired surrogates are written as '?'
+     * @param value characters to encode
+     * @param start index of first character
+     * @param end index after last character
+     * @param buffer buffer to write to from its position
+     */
+    static void encode(CharSequence value, int start, int end, ByteBuffer buffer) {
+        for(int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                buffer.put((byte) c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if(Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if(Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Decode bytes of buffer without changing its position
+     * @param buffer buffer to read from
+     * @param offset absolute index of first byte
+     * @param length number of bytes
+     * @return decoded string
+     */
+    static String decode(ByteBuffer buffer, int offset, int length) {
+        char[] chars = new char[length];
+        int count = 0;
+        int end = offset + length;
+        for(int i = offset; i < end; i++) {
+            int b = buffer.get(i) & 0xFF;
+            if(b < 0x80) {
+                chars[count++] = (char) b;
+            } else if(b < 0xE0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get(++i) & 0x3F));
+            } else if(b < 0xF0) {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((buffer.get(++i) & 0x3F) << 6) | (buffer.get(++i) & 0x3F));
+            } else {
+                int codePoint = ((b & 0x07) << 18) | ((buffer.get(++i) & 0x3F) << 12)
+                                | ((buffer.get(++i) & 0x3F) << 6) | (buffer.get(++i) & 0x3F);
+                chars[count++] = Character.highSurrogate(codePoint);
+                chars[count++] = Character.lowSurrogate(codePoint);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
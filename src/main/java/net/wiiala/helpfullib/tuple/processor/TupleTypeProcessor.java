@@ -0,0 +1,352 @@
+package net.wiiala.helpfullib.tuple.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import net.wiiala.helpfullib.tuple.TupleType;
+
+/**
+ * Annotation processor that generates a typed tuple class for every class annotated
+ * with {@link TupleType}. The generated class holds one typed field per element,
+ * creates the annotated class through a direct constructor call and converts to and
+ * from the generic {@link net.wiiala.helpfullib.tuple.Tuple} API.
+ *
+ * The processor is registered as a service so it runs automatically when this library
+ * is on the compile classpath.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@SupportedAnnotationTypes("net.wiiala.helpfullib.tuple.TupleType")
+public class TupleTypeProcessor extends AbstractProcessor {
+
+    private static final String TUPLE = "net.wiiala.helpfullib.tuple.Tuple";
+    private static final String SCHEMA = "net.wiiala.helpfullib.tuple.TupleSchema";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element element : roundEnv.getElementsAnnotatedWith(TupleType.class)) {
+            if(element.getKind() != ElementKind.CLASS) {
+                error(element, "@TupleType can only be used on classes");
+                continue;
+            }
+            try {
+                generate((TypeElement) element);
+            } catch(IOException e) {
+                error(element, "Could not write tuple class: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validate annotated class and write its tuple class
+     * @param type annotated class
+     */
+    private void generate(TypeElement type) throws IOException {
+        if(!type.getTypeParameters().isEmpty()) {
+            error(type, "@TupleType can't be used on generic classes");
+            return;
+        }
+        if(type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@TupleType can only be used on top level or static nested classes");
+            return;
+        }
+
+        List<Component> components = new ArrayList();
+        for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if(field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String accessor = accessorOf(type, field);
+            if(accessor == null) {
+                error(field, "Private field " + field.getSimpleName() + " needs a getter to be part of a tuple");
+                return;
+            }
+            components.add(new Component(field, accessor));
+        }
+
+        if(!hasConstructor(type, components)) {
+            error(type, "@TupleType class needs a constructor that takes all fields in declaration order");
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = type.getAnnotation(TupleType.class).name();
+        if(simpleName.isEmpty()) {
+            simpleName = flatName(type) + "Tuple";
+        }
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        try(Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(new TupleClassWriter(packageName, simpleName, type.getQualifiedName().toString(), components).toString());
+        }
+    }
+
+    /**
+     * Find how a field can be read from the generated class in the same package
+     * @return expression reading field from a variable named object or null if field can't be read
+     */
+    private String accessorOf(TypeElement type, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        if(!field.getModifiers().contains(Modifier.PRIVATE)) {
+            return "object." + name;
+        }
+
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for(ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String methodName = method.getSimpleName().toString();
+            if(method.getParameters().isEmpty()
+               && !method.getModifiers().contains(Modifier.PRIVATE)
+               && !method.getModifiers().contains(Modifier.STATIC)
+               && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())
+               && (methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized) || methodName.equals(name))) {
+                return "object." + methodName + "()";
+            }
+        }
+        return null;
+    }
+
+    private boolean hasConstructor(TypeElement type, List<Component> components) {
+        for(ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if(constructor.getModifiers().contains(Modifier.PRIVATE) || parameters.size() != components.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for(int i = 0; i < parameters.size() && matches; i++) {
+                matches = processingEnv.getTypeUtils().isSameType(parameters.get(i).asType(), components.get(i).type);
+            }
+            if(matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Name of class including enclosing classes joined by underscore
+     */
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element enclosing = type.getEnclosingElement();
+        while(enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * One element of generated tuple
+     */
+    private final class Component {
+        private final String name;
+        private final TypeMirror type;
+        private final String accessor;
+
+        Component(VariableElement field, String accessor) {
+            this.name = field.getSimpleName().toString();
+            this.type = field.asType();
+            this.accessor = accessor;
+        }
+
+        String typeName() {
+            return type.toString();
+        }
+
+        /**
+         * Class literal of slot type, primitive slots exist for int, long, double and boolean
+         */
+        String slotClass() {
+            return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+        }
+
+        /**
+         * Name of typed getter and setter on Tuple or null if value is read through getValue
+         */
+        String tupleAccessor() {
+            switch(type.getKind()) {
+                case INT:     return "Int";
+                case LONG:    return "Long";
+                case DOUBLE:  return "Double";
+                case BOOLEAN: return "Boolean";
+                default:      return null;
+            }
+        }
+
+        /**
+         * Type to cast value of getValue to, wrapper class for primitives without a primitive slot
+         */
+        String castType() {
+            if(type.getKind().isPrimitive()) {
+                return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+            }
+            return type.toString();
+        }
+    }
+
+    /**
+     * Writes source of one generated tuple class
+     */
+    private final class TupleClassWriter {
+        private final StringBuilder out = new StringBuilder();
+
+        TupleClassWriter(String packageName, String simpleName, String objectClass, List<Component> components) {
+            if(!packageName.isEmpty()) {
+                line("package %s;", packageName);
+                line("");
+            }
+            line("/**");
+            line(" * Typed tuple of {@link %s}, generated by %s", objectClass, TupleTypeProcessor.class.getName());
+            line(" */");
+            line("public final class %s {", simpleName);
+            line("");
+            line("    /**Shared schema of all tuples of %s*/", objectClass);
+            line("    public static final %s SCHEMA = schema();", SCHEMA);
+            line("");
+            for(Component component : components) {
+                line("    private final %s %s;", component.typeName(), component.name);
+            }
+            line("");
+
+            //Constructor taking all elements
+            StringBuilder parameters = new StringBuilder();
+            StringBuilder arguments = new StringBuilder();
+            for(Component component : components) {
+                if(parameters.length() > 0) {
+                    parameters.append(", ");
+                    arguments.append(", ");
+                }
+                parameters.append(component.typeName()).append(" ").append(component.name);
+                arguments.append(component.name);
+            }
+            line("    public %s(%s) {", simpleName, parameters);
+            for(Component component : components) {
+                line("        this.%s = %s;", component.name, component.name);
+            }
+            line("    }");
+            line("");
+
+            //Conversion from annotated class
+            StringBuilder accessors = new StringBuilder();
+            for(Component component : components) {
+                if(accessors.length() > 0) {
+                    accessors.append(", ");
+                }
+                accessors.append(component.accessor);
+            }
+            line("    /**");
+            line("     * Create a tuple of the values of object");
+            line("     */");
+            line("    public static %s of(%s object) {", simpleName, objectClass);
+            line("        return new %s(%s);", simpleName, accessors);
+            line("    }");
+            line("");
+
+            //Conversion from generic tuple
+            StringBuilder values = new StringBuilder();
+            for(Component component : components) {
+                if(values.length() > 0) {
+                    values.append(", ");
+                }
+                if(component.tupleAccessor() != null) {
+                    values.append("tuple.get").append(component.tupleAccessor()).append("(\"").append(component.name).append("\")");
+                } else {
+                    values.append("(").append(component.castType()).append(") tuple.getValue(\"").append(component.name).append("\")");
+                }
+            }
+            line("    /**");
+            line("     * Create a typed tuple of the values of a generic tuple");
+            line("     */");
+            line("    @SuppressWarnings(\"unchecked\")");
+            line("    public static %s fromTuple(%s<?> tuple) {", simpleName, TUPLE);
+            line("        return new %s(%s);", simpleName, values);
+            line("    }");
+            line("");
+
+            //Typed accessors
+            for(Component component : components) {
+                String capitalized = Character.toUpperCase(component.name.charAt(0)) + component.name.substring(1);
+                line("    public %s get%s() {", component.typeName(), capitalized);
+                line("        return %s;", component.name);
+                line("    }");
+                line("");
+            }
+
+            //Conversion to annotated class and generic tuple
+            line("    /**");
+            line("     * Create object through a direct constructor call");
+            line("     */");
+            line("    public %s toObject() {", objectClass);
+            line("        return new %s(%s);", objectClass, arguments);
+            line("    }");
+            line("");
+            line("    /**");
+            line("     * Create a generic tuple of the values of this tuple");
+            line("     */");
+            line("    public %s<%s> toTuple() {", TUPLE, objectClass);
+            line("        %s<%s> tuple = new %s<%s>(%s.class, SCHEMA);", TUPLE, objectClass, TUPLE, objectClass, objectClass);
+            for(Component component : components) {
+                String setter = component.tupleAccessor() == null ? "Value" : component.tupleAccessor();
+                line("        tuple.set%s(\"%s\", this.%s);", setter, component.name, component.name);
+            }
+            line("        return tuple;");
+            line("    }");
+            line("");
+
+            //Schema
+            StringBuilder identifiers = new StringBuilder();
+            StringBuilder types = new StringBuilder();
+            for(Component component : components) {
+                if(identifiers.length() > 0) {
+                    identifiers.append(", ");
+                    types.append(", ");
+                }
+                identifiers.append("\"").append(component.name).append("\"");
+                types.append(component.slotClass());
+            }
+            line("    private static %s schema() {", SCHEMA);
+            line("        try {");
+            line("            return %s.of(new String[]{%s}, new Class<?>[]{%s});", SCHEMA, identifiers, types);
+            line("        } catch(net.wiiala.helpfullib.tuple.InvalidTupleException e) {");
+            line("            throw new ExceptionInInitializerError(e);");
+            line("        }");
+            line("    }");
+            line("}");
+        }
+
+        private void line(String format, Object... arguments) {
+            out.append(String.format(format, arguments)).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
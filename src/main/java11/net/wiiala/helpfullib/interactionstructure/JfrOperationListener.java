@@ -0,0 +1,101 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.Method;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Metrics listener that emits every invocation and every broken rule as a
+ * Java Flight Recorder event, so slow and failing operations show up in recordings
+ * next to the rest of the application.
+ *
+ * This version is used on Java 11 and later. Whether a recording has an event enabled is
+ * checked on its event type before the event is created, so no event is allocated and
+ * nothing but that check is done while no recording has it enabled.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class JfrOperationListener implements OperationMetricsListener {
+
+    private static final EventType INVOCATION = EventType.getEventType(InvocationEvent.class);
+    private static final EventType RULE_BROKEN = EventType.getEventType(RuleBrokenEvent.class);
+
+    /**
+     * Check if events are emitted
+     * @return true on Java 11 and later
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void invoked(OperationAction action, long nanos) {
+        emit(action, nanos, false);
+    }
+
+    @Override
+    public void invocationFailed(OperationAction action, long nanos, Exception failure) {
+        emit(action, nanos, true);
+    }
+
+    private static void emit(OperationAction action, long nanos, boolean failed) {
+        if(!INVOCATION.isEnabled()) {
+            return;
+        }
+        InvocationEvent event = new InvocationEvent();
+        Method method = action.getMethod();
+        event.declaringClass = method.getDeclaringClass().getName();
+        event.method = method.getName();
+        event.invocationTime = nanos;
+        event.failed = failed;
+        event.commit();
+    }
+
+    @Override
+    public void ruleBroken(OperationAction action, OperationValidBehavior rule) {
+        if(!RULE_BROKEN.isEnabled()) {
+            return;
+        }
+        RuleBrokenEvent event = new RuleBrokenEvent();
+        Method method = action.getMethod();
+        event.declaringClass = method.getDeclaringClass().getName();
+        event.method = method.getName();
+        event.comparision = rule.getComparision().name();
+        event.commit();
+    }
+
+    @Name("net.wiiala.helpfullib.OperationInvocation")
+    @Label("Operation Invocation")
+    @Category("Helpfullib")
+    static final class InvocationEvent extends Event {
+        @Label("Class")
+        String declaringClass;
+
+        @Label("Method")
+        String method;
+
+        @Label("Invocation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long invocationTime;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("net.wiiala.helpfullib.RuleBroken")
+    @Label("Rule Broken")
+    @Category("Helpfullib")
+    static final class RuleBrokenEvent extends Event {
+        @Label("Class")
+        String declaringClass;
+
+        @Label("Method")
+        String method;
+
+        @Label("Comparision")
+        String comparision;
+    }
+}
@@ -0,0 +1,55 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executor for operations that block, e.g. on file or database reads, that runs at most
+ * a given number of operations at the same time.
+ *
+ * This version is used on Java 21 and later and runs every operation on its own virtual
+ * thread, a blocked operation then don't hold on to a platform thread and thousands of
+ * operations can wait at the same time. The number of running operations is limited by a semaphore.
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+final class BlockingExecutor implements Executor {
+
+    private final Semaphore permits;
+    private final ThreadFactory factory = Thread.ofVirtual().name("operation-runner-", 0).factory();
+
+    /**
+     * @param concurrency highest number of operations run at the same time
+     */
+    BlockingExecutor(int concurrency) {
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Check if operations are run on virtual threads, a method and not a constant
+     * so the value is not copied into classes compiled against this version
+     * @return true
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        factory.newThread(() -> {
+            //Operations are only submitted when they are ready so waiting here can't deadlock
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        }).start();
+    }
+
+    /**
+     * Virtual threads end by themselves, nothing to shut down
+     */
+    void shutdown() {
+    }
+}
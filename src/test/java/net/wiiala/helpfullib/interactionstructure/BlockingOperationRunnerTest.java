@@ -0,0 +1,58 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests runs of blocking operations
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class BlockingOperationRunnerTest {
+    
+    public BlockingOperationRunnerTest() {
+    }
+    
+    /**
+     * Test that blocking operations wait at the same time and that all results are collected.
+     * Every operation waits until all of them have started, which they only can if they run at the same time
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRun() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(100);
+        OperationBatch batch = new OperationBatch();
+        for(int i = 0; i < 100; i++) {
+            batch.add(new OperationAction(new SimpleOperations(log), "meet", started));
+        }
+        OperationAction broken = new OperationAction(new SimpleOperations(log), "record", "broken");
+        broken.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "other"));
+        OperationAction skipped = new OperationAction(new SimpleOperations(log), "record", "skipped");
+        skipped.addDependency(broken);
+        batch.add(broken, skipped);
+        
+        List<OperationResult> results = new BlockingOperationRunner(100).run(batch);
+        
+        Assert.assertEquals(102, results.size());
+        for(int i = 0; i < 100; i++) {
+            Assert.assertEquals("Operations should wait at the same time", true, results.get(i).getValue());
+        }
+        Assert.assertTrue(results.get(100).isRuleBroken());
+        Assert.assertFalse(results.get(101).isInvoked());
+        Assert.assertEquals(1, log.size());
+    }
+    
+    /**
+     * Test that operations run on virtual threads when tests run on the multi-release jar on Java 21,
+     * as the java21 profile does
+     */
+    @Test
+    public void testVirtualThreads() {
+        Assert.assertEquals(Boolean.getBoolean("helpfullib.virtualThreads"), BlockingOperationRunner.usesVirtualThreads());
+    }
+}
@@ -0,0 +1,101 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.BitSet;
+import java.util.Random;
+import net.wiiala.helpfullib.tuple.TupleBatch;
+import net.wiiala.helpfullib.tuple.TupleSchema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests bulk validation of columns against rules
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class ColumnValidationTest {
+    
+    public ColumnValidationTest() {
+    }
+    
+    /**
+     * Test that columns are validated as every boxed value would be by the rules
+     */
+    @Test
+    public void testSameAsRules() {
+        OperationValidBehavior[][] ruleSets = {
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.GREATER, 10),
+             new OperationValidBehavior(OperationValidBehavior.COMPARISION.LESSOREQUAL, 900L)},
+            {new OperationValidBehavior(-5.5, 500.25)},
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.LESS, 0.5),
+             new OperationValidBehavior(OperationValidBehavior.COMPARISION.NOTNULL, null)},
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.EQUAL, 7)},
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.EQUAL, 7L)},
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.GREATEROREQUAL, "a")},
+            {new OperationValidBehavior(OperationValidBehavior.COMPARISION.PATTERN, "[0-9]+")},
+            {}
+        };
+        Random random = new Random(42);
+        int[] ints = new int[1000];
+        long[] longs = new long[ints.length];
+        double[] doubles = new double[ints.length];
+        for(int i = 0; i < ints.length; i++) {
+            ints[i] = random.nextInt(100) == 0 ? random.nextInt(2000) - 1000 : random.nextInt(100) + 20;
+            longs[i] = ints[i];
+            doubles[i] = i == 600 ? Double.NaN : ints[i] / 2.0;
+        }
+        
+        for(OperationValidBehavior[] rules : ruleSets) {
+            ColumnValidation validation = new ColumnValidation();
+            for(OperationValidBehavior rule : rules) {
+                validation.addRules(rule);
+            }
+            BitSet intFailures = new BitSet();
+            BitSet longFailures = new BitSet();
+            BitSet doubleFailures = new BitSet();
+            for(int i = 0; i < ints.length; i++) {
+                for(OperationValidBehavior rule : rules) {
+                    intFailures.set(i, intFailures.get(i) || !rule.accepts(ints[i]));
+                    longFailures.set(i, longFailures.get(i) || !rule.accepts(longs[i]));
+                    doubleFailures.set(i, doubleFailures.get(i) || !rule.accepts(doubles[i]));
+                }
+            }
+            Assert.assertEquals(intFailures, validation.failures(ints));
+            Assert.assertEquals(longFailures, validation.failures(longs));
+            Assert.assertEquals(doubleFailures, validation.failures(doubles));
+            Assert.assertEquals(intFailures.isEmpty() ? -1 : intFailures.nextSetBit(0), validation.firstFailure(ints));
+            Assert.assertEquals(longFailures.isEmpty() ? -1 : longFailures.nextSetBit(0), validation.firstFailure(longs));
+            Assert.assertEquals(doubleFailures.isEmpty() ? -1 : doubleFailures.nextSetBit(0), validation.firstFailure(doubles));
+        }
+    }
+    
+    /**
+     * Test validation of columns of a tuple batch, only rows of batch are validated
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testTupleBatch() throws Exception {
+        TupleBatch batch = new TupleBatch(TupleSchema.of(new String[]{"count", "name"}, new Class<?>[]{long.class, String.class}));
+        batch.add(5L, "five");
+        batch.add(50L, "fifty");
+        batch.add(500L, "500");
+        
+        ColumnValidation validation = new ColumnValidation();
+        validation.addRules(new OperationValidBehavior(0L, 100L));
+        Assert.assertEquals(2, validation.firstFailure(batch, "count"));
+        Assert.assertEquals(1, validation.failures(batch, "count").cardinality());
+        
+        ColumnValidation names = new ColumnValidation();
+        names.addRules(new OperationValidBehavior(OperationValidBehavior.COMPARISION.PATTERN, "[a-z]+"));
+        Assert.assertEquals(2, names.firstFailure(batch, "name"));
+        
+        try {
+            validation.addRules(new OperationValidBehavior());
+            Assert.fail("VOID rule was accepted");
+        } catch(IllegalArgumentException e) {
+        }
+        try {
+            validation.firstFailure(batch, "missing");
+            Assert.fail("Missing column was accepted");
+        } catch(IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests runs of batches within deadlines
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class DeadlineSchedulerTest {
+    
+    public DeadlineSchedulerTest() {
+    }
+    
+    /**
+     * Test that slow actions time out and that actions which are not critical are dropped after deadline
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDeadlines() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<String> log = Collections.synchronizedList(new ArrayList<String>());
+            OperationAction slow = new OperationAction(new SimpleOperations(log), "sleep", 5000L);
+            slow.setTimeout(50, TimeUnit.MILLISECONDS);
+            slow.setCritical(false);
+            OperationAction waiting = new OperationAction(new SimpleOperations(log), "sleep", 100L);
+            OperationAction optional = new OperationAction(new SimpleOperations(log), "record", "optional");
+            optional.setCritical(false);
+            OperationAction needed = new OperationAction(new SimpleOperations(log), "record", "needed");
+            OperationBatch batch = new OperationBatch();
+            batch.add(slow, waiting, optional, needed);
+            
+            DeadlineScheduler scheduler = new DeadlineScheduler(executor);
+            scheduler.setDeadline(100, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            List<OperationResult> results = batch.runWithDeadline(scheduler);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            
+            Assert.assertTrue(results.get(0).getFailure() instanceof TimeoutException);
+            Assert.assertTrue(results.get(1).isSuccessful());
+            Assert.assertFalse(results.get(2).isInvoked());
+            Assert.assertEquals("needed", results.get(3).getValue());
+            Assert.assertEquals(1, scheduler.getTimeoutCount());
+            Assert.assertEquals(1, scheduler.getDroppedCount());
+            Assert.assertFalse(log.contains("optional"));
+            
+            //A critical action that times out stops the batch
+            slow.setCritical(true);
+            results = new DeadlineScheduler(executor).run(batch);
+            Assert.assertTrue(results.get(0).getFailure() instanceof TimeoutException);
+            Assert.assertFalse(results.get(3).isInvoked());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Test that an idempotent action that stalls is hedged by a second invocation
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testHedging() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            SimpleOperations target = new SimpleOperations();
+            OperationAction read = new OperationAction(target, "read");
+            read.setIdempotent(true);
+            OperationBatch batch = new OperationBatch();
+            batch.add(read);
+            
+            DeadlineScheduler scheduler = new DeadlineScheduler(executor);
+            scheduler.setHedging(90, 20);
+            for(int i = 0; i < 20; i++) {
+                Assert.assertTrue(batch.runWithDeadline(scheduler).get(0).isSuccessful());
+            }
+            Assert.assertEquals(0, scheduler.getHedgeCount());
+            Assert.assertEquals(20, scheduler.getLatency(read.getMethod()).getCount());
+            
+            target.stallNext(5000);
+            long start = System.nanoTime();
+            List<OperationResult> results = batch.runWithDeadline(scheduler);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            Assert.assertEquals("read", results.get(0).getValue());
+            Assert.assertEquals(1, scheduler.getHedgeCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
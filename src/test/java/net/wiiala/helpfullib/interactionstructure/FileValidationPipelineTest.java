@@ -0,0 +1,84 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests parallel validation of files
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class FileValidationPipelineTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    public FileValidationPipelineTest() {
+    }
+    
+    /**
+     * Test that all records are validated across chunks and that a broken record is found
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testValidate() throws Exception {
+        File file = folder.newFile("records.txt");
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for(int i = 0; i < 10000; i++) {
+                writer.write("record;" + i + (i % 2 == 0 ? "\n" : "\r\n"));
+            }
+            writer.write("record;last");
+        }
+        
+        FileValidationPipeline pipeline = new FileValidationPipeline(file.toPath());
+        pipeline.addRules(new OperationValidBehavior(COMPARISION.PATTERN, "record;(\\d+|last)"));
+        pipeline.setChunkSize(1000);
+        pipeline.setParallelism(4);
+        Assert.assertEquals(10001, pipeline.validate());
+        
+        pipeline.addRules(new OperationValidBehavior(COMPARISION.PATTERN, "record;([0-9]{1,3}|last)"));
+        try {
+            pipeline.validate();
+            Assert.fail("Record with four digits should break rule");
+        } catch(RecordValidationException e) {
+            Assert.assertTrue(e.getRecord().matches("record;\\d{4}"));
+            Assert.assertEquals(Long.parseLong(e.getRecord().substring(7)) + 1, e.getLineNumber());
+        }
+    }
+    
+    /**
+     * Test that an error of a rule stops validation and is thrown
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testError() throws Exception {
+        File file = folder.newFile("long.txt");
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for(int i = 0; i < 1000; i++) {
+                writer.write("ab\n");
+            }
+            for(int i = 0; i < 100000; i++) {
+                writer.write("ab");
+            }
+            writer.write("\n");
+        }
+        
+        FileValidationPipeline pipeline = new FileValidationPipeline(file.toPath());
+        pipeline.addRules(new OperationValidBehavior(COMPARISION.PATTERN, "(a|b)*"));
+        pipeline.setChunkSize(1000);
+        pipeline.setParallelism(4);
+        try {
+            pipeline.validate();
+            Assert.fail("Error of rule should be thrown");
+        } catch(StackOverflowError e) {
+            //Expected
+        }
+    }
+}
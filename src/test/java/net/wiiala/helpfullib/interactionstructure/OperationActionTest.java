@@ -0,0 +1,171 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests resolution and invocation of operation actions
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationActionTest {
+    
+    public OperationActionTest() {
+    }
+    
+    /**
+     * Test that overloads with primitive and super type parameters are resolved
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testOverloads() throws Exception {
+        OperationAction<SimpleOperations> action = new OperationAction(new SimpleOperations(), "add", 2L, 3L);
+        Assert.assertEquals(5L, action.invokeMethod());
+        Assert.assertEquals(7L, action.invokeMethod("add", 3L, 4L));
+        
+        Assert.assertEquals("Integer", action.invokeMethod("describe", 1));
+        Assert.assertEquals("Number", action.invokeMethod("describe", 1.5));
+        Assert.assertEquals("Object", action.invokeMethod("describe", "text"));
+        Assert.assertEquals("Integer", action.invokeMethod("describe", new Object[]{null}));
+        Assert.assertEquals(4, action.invokeMethod("length", new StringBuilder("four")));
+        
+        Assert.assertEquals("Integer, Object", action.invokeMethod("pair", 1, "text"));
+        try {
+            action.invokeMethod("pair", 1, 2);
+            Assert.fail("Ambiguous call was not reported");
+        } catch(NoSuchMethodException e) {
+        }
+    }
+    
+    /**
+     * Test that rules still see the resolved method and that exceptions are wrapped
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testInvocation() throws Exception {
+        OperationAction<SimpleOperations> action = new OperationAction(new SimpleOperations(), "nothing");
+        action.addRules(new OperationValidBehavior());
+        Assert.assertNull(action.invokeMethod());
+        
+        try {
+            action.invokeMethod("fail");
+            Assert.fail("Exception of method should be thrown");
+        } catch(InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        } catch(MethodBehaviourException e) {
+            Assert.fail("Method should fail before rules are tested");
+        }
+        
+        action.setRules(new java.util.ArrayList<OperationValidBehavior>());
+        action.addRules(new OperationValidBehavior(COMPARISION.NOTNULL, null));
+        try {
+            action.invokeMethod("missing", 1);
+            Assert.fail("Method should not be found");
+        } catch(NoSuchMethodException e) {
+            //Expected
+        }
+        
+        Assert.assertEquals(5L, action.invokeMethod(SimpleOperations.class, "add", 2L, 3L));
+        Assert.assertEquals("fail", action.getMethod().getName());
+        
+        //Errors are not wrapped as if they were exceptions of method
+        try {
+            action.invokeMethod("breakDown");
+            Assert.fail("Error of method should be thrown");
+        } catch(AssertionError e) {
+            Assert.assertEquals("break down", e.getMessage());
+        }
+    }
+    
+    /**
+     * Test that one action is invoked on many instances without being changed
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testInvokeAll() throws Exception {
+        SimpleOperations[] instances = new SimpleOperations[1000];
+        for(int i = 0; i < instances.length; i++) {
+            instances[i] = i % 100 == 0 ? null : new SimpleOperations();
+        }
+        OperationAction<SimpleOperations> action = new OperationAction(new SimpleOperations(), "add", 2L, 3L);
+        action.addRules(new OperationValidBehavior(COMPARISION.EQUAL, 5L));
+        
+        BulkOperationResult result = action.invokeAll(instances);
+        Assert.assertEquals(1000, result.size());
+        Assert.assertEquals(10, result.getFailureCount());
+        Assert.assertEquals(5L, result.getValue(1));
+        Assert.assertFalse(result.isSuccessful(100));
+        Assert.assertTrue(result.getFailure(100) instanceof IllegalArgumentException);
+        Assert.assertEquals(5L, action.invokeMethod());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            action.addRules(new OperationValidBehavior(COMPARISION.LESS, 5L));
+            result = action.invokeAll(instances, executor, 64);
+            Assert.assertEquals(1000, result.getFailureCount());
+            Assert.assertTrue(result.getFailure(999) instanceof MethodBehaviourException);
+            Assert.assertEquals(999, result.getFailedIndexes()[999]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Test that rules that are often broken are moved first in adaptive order
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAdaptiveRuleOrder() throws Exception {
+        OperationAction<SimpleOperations> action = new OperationAction(new SimpleOperations(), "record", "value");
+        OperationValidBehavior notNull = new OperationValidBehavior(COMPARISION.NOTNULL, null);
+        OperationValidBehavior pattern = new OperationValidBehavior(COMPARISION.PATTERN, "v.*");
+        OperationValidBehavior equal = new OperationValidBehavior(COMPARISION.EQUAL, "other");
+        action.addRules(notNull);
+        action.addRules(pattern);
+        action.addRules(equal);
+        action.setAdaptiveRuleOrder(true);
+        
+        for(int i = 0; i < 1000; i++) {
+            try {
+                action.invokeMethod();
+                Assert.fail("Rule should be broken");
+            } catch(MethodBehaviourException e) {
+                Assert.assertTrue(e.getMessage().endsWith("return value of method don't match object in rule"));
+            }
+        }
+        Assert.assertSame(equal, action.getRuleOrder()[0]);
+        
+        //Adding a rule starts over in added order
+        action.addRules(new OperationValidBehavior(COMPARISION.NOTNULL, null));
+        Assert.assertSame(notNull, action.getRuleOrder()[0]);
+    }
+    
+    /**
+     * Test that a cheap rule that is almost always broken is tested before an expensive rule
+     * that is always broken, since it finds a broken value at a lower cost
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAdaptiveRuleCost() throws Exception {
+        String value = "aaaaaaaaaaaaaaaaaaaaa";
+        OperationAction<SimpleOperations> action = new OperationAction(new SimpleOperations(), "record", value);
+        OperationValidBehavior expensive = new OperationValidBehavior(COMPARISION.PATTERN, "(a|aa)*b");
+        OperationValidBehavior cheap = new OperationValidBehavior(COMPARISION.EQUAL, value);
+        action.addRules(expensive);
+        action.addRules(cheap);
+        action.setAdaptiveRuleOrder(true);
+        
+        for(int i = 0; i < 2048; i++) {
+            try {
+                action.invokeMethod("record", i % 100 == 0 ? value : value + "c");
+                Assert.fail("Rule should be broken");
+            } catch(MethodBehaviourException e) {
+                //Expected
+            }
+        }
+        Assert.assertSame(cheap, action.getRuleOrder()[0]);
+    }
+}
@@ -0,0 +1,434 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import net.wiiala.helpfullib.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests sequential and parallel runs of operation batches
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationBatchTest {
+    
+    public OperationBatchTest() {
+    }
+    
+    /**
+     * Test that actions are run after the actions they depend on
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDependencies() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        OperationBatch batch = new OperationBatch();
+        OperationAction last = new OperationAction(new SimpleOperations(log), "record", "last");
+        batch.add(last);
+        List<OperationAction> reads = new ArrayList();
+        for(int i = 0; i < 50; i++) {
+            OperationAction read = new OperationAction(new SimpleOperations(log), "record", "read" + i);
+            reads.add(read);
+            batch.add(read);
+        }
+        last.addDependency(reads.toArray(new OperationAction[0]));
+        
+        batch.run();
+        Assert.assertEquals(51, log.size());
+        Assert.assertEquals("read0", log.get(0));
+        Assert.assertEquals("last", log.get(50));
+        
+        log.clear();
+        batch.runParallel();
+        Assert.assertEquals(51, log.size());
+        Assert.assertEquals("last", log.get(50));
+        
+        reads.get(0).addDependency(last);
+        try {
+            batch.runParallel();
+            Assert.fail("Cycle should be found");
+        } catch(IllegalArgumentException e) {
+            //Expected
+        }
+        log.clear();
+        try {
+            batch.run();
+            Assert.fail("Cycle should be found");
+        } catch(IllegalArgumentException e) {
+            Assert.assertTrue(log.isEmpty());
+        }
+        batch.setAdaptiveOrder(true);
+        try {
+            batch.run();
+            Assert.fail("Cycle should be found");
+        } catch(IllegalArgumentException e) {
+            Assert.assertTrue(log.isEmpty());
+        }
+    }
+    
+    /**
+     * Test that a broken rule stops actions that has not started
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testFailFast() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        OperationBatch batch = new OperationBatch();
+        OperationAction previous = null;
+        for(int i = 0; i < 20; i++) {
+            OperationAction action = new OperationAction(new SimpleOperations(log), "record", "step" + i);
+            if(i == 5) {
+                action.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "other"));
+            }
+            if(previous != null) {
+                action.addDependency(previous);
+            }
+            batch.add(action);
+            previous = action;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            batch.runParallel(executor);
+            Assert.fail("Broken rule should stop batch");
+        } catch(MethodBehaviourException e) {
+            Assert.assertEquals(6, log.size());
+        }
+        
+        //Exception of a method stops the batch and is thrown
+        log.clear();
+        batch = new OperationBatch();
+        OperationAction failing = new OperationAction(new SimpleOperations(log), "fail");
+        OperationAction after = new OperationAction(new SimpleOperations(log), "record", "after");
+        after.addDependency(failing);
+        batch.add(failing);
+        batch.add(after);
+        try {
+            batch.runParallel(executor);
+            Assert.fail("Exception of method should be thrown");
+        } catch(InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertTrue(log.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Test that asynchronous runs complete with results, broken rules and timeouts
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRunAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            OperationBatch batch = new OperationBatch();
+            batch.add(new OperationAction(new SimpleOperations(), "record", "first"),
+                      new OperationAction(new SimpleOperations(), "add", 1L, 2L));
+            final CountDownLatch called = new CountDownLatch(1);
+            BatchFuture future = batch.runAsync(executor);
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    called.countDown();
+                }
+            });
+            List<OperationResult> results = future.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("first", results.get(0).getValue());
+            Assert.assertEquals(3L, results.get(1).getValue());
+            Assert.assertTrue(called.await(5, TimeUnit.SECONDS));
+            
+            batch.getFirst().addRules(new OperationValidBehavior(COMPARISION.EQUAL, "other"));
+            try {
+                batch.runAsync(executor).get(5, TimeUnit.SECONDS);
+                Assert.fail("Broken rule should complete future exceptionally");
+            } catch(ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof MethodBehaviourException);
+            }
+            
+            OperationBatch slow = new OperationBatch();
+            slow.add(new OperationAction(new SimpleOperations(), "sleep", 2000L));
+            try {
+                slow.runAsync(executor, 50, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+                Assert.fail("Run should time out");
+            } catch(ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Test that a listener that throws don't stop other listeners and that a rejected run is thrown
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRunAsyncListeners() throws Exception {
+        OperationBatch batch = new OperationBatch();
+        batch.add(new OperationAction(new SimpleOperations(), "record", "first"));
+        final List<Runnable> tasks = new ArrayList();
+        BatchFuture future = batch.runAsync(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        }, 5, TimeUnit.SECONDS);
+        
+        final List<String> called = new ArrayList();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                called.add("failing");
+                throw new IllegalStateException("listener");
+            }
+        });
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                called.add("second");
+            }
+        });
+        final List<Throwable> uncaught = new ArrayList();
+        Thread.currentThread().setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable e) {
+                uncaught.add(e);
+            }
+        });
+        try {
+            tasks.get(0).run();
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(null);
+        }
+        Assert.assertEquals("first", future.get().get(0).getValue());
+        Assert.assertEquals(Arrays.asList("failing", "second"), called);
+        Assert.assertEquals(1, uncaught.size());
+        
+        try {
+            batch.runAsync(new Executor() {
+                @Override
+                public void execute(Runnable task) {
+                    throw new RejectedExecutionException("full");
+                }
+            }, 5, TimeUnit.SECONDS);
+            Assert.fail("Rejected run was not thrown");
+        } catch(RejectedExecutionException e) {
+        }
+    }
+    
+    /**
+     * Test that idempotent actions are served from cache and rules are tested on cached values
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testResultCache() throws Exception {
+        List<String> log = new ArrayList();
+        SimpleOperations target = new SimpleOperations(log);
+        OperationAction read = new OperationAction(target, "record", "read");
+        read.setIdempotent(true);
+        OperationBatch batch = new OperationBatch();
+        batch.add(read, new OperationAction(target, "record", "write"));
+        OperationResultCache cache = new OperationResultCache(1);
+        batch.setResultCache(cache);
+        
+        batch.run();
+        batch.run();
+        Assert.assertEquals(3, log.size());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        
+        read.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "other"));
+        try {
+            batch.run();
+            Assert.fail("Rule should be tested on cached value");
+        } catch(MethodBehaviourException e) {
+            Assert.assertEquals(3, log.size());
+        }
+        read.setRules(new ArrayList<OperationValidBehavior>());
+        
+        OperationAction other = new OperationAction(target, "record", "other");
+        other.setIdempotent(true);
+        batch.add(other);
+        batch.run();
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        
+        OperationResultCache expiring = new OperationResultCache(10, 1, TimeUnit.MILLISECONDS);
+        batch.setResultCache(expiring);
+        batch.run();
+        Thread.sleep(20);
+        log.clear();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            batch.runAsync(executor).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(3, log.size());
+        Assert.assertEquals(0, expiring.getHitCount());
+    }
+    
+    /**
+     * Test that actions that fail are moved first in adaptive order unless they depend on other actions
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAdaptiveOrder() throws Exception {
+        List<String> log = new ArrayList();
+        OperationAction passing = new OperationAction(new SimpleOperations(log), "record", "passing");
+        OperationAction failing = new OperationAction(new SimpleOperations(log), "record", "failing");
+        failing.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "other"));
+        OperationBatch batch = new OperationBatch();
+        batch.add(passing, failing);
+        batch.setAdaptiveOrder(true);
+        
+        //Failing runs cost their time too, so how soon failing comes first depends on timing
+        for(int i = 0; i < 100 && !log.equals(Collections.singletonList("failing")); i++) {
+            log.clear();
+            try {
+                batch.run();
+                Assert.fail("Rule should be broken");
+            } catch(MethodBehaviourException e) {
+                //Expected
+            }
+        }
+        Assert.assertEquals(Collections.singletonList("failing"), log);
+        
+        failing.addDependency(passing);
+        log.clear();
+        try {
+            batch.run();
+            Assert.fail("Rule should be broken");
+        } catch(MethodBehaviourException e) {
+            Assert.assertEquals(2, log.size());
+            Assert.assertEquals("passing", log.get(0));
+        }
+    }
+    
+    /**
+     * Test that actions added by many threads are frozen into a plan that many threads run
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testPlan() throws Exception {
+        final OperationBatchBuilder builder = new OperationBatchBuilder();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final CountDownLatch added = new CountDownLatch(4);
+            for(int t = 0; t < 4; t++) {
+                final long thread = t;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for(long i = 0; i < 250; i++) {
+                                builder.add(new OperationAction(new SimpleOperations(), "add", thread, i));
+                            }
+                        } catch(NoSuchMethodException | ClassNotFoundException e) {
+                            throw new IllegalStateException(e);
+                        } finally {
+                            added.countDown();
+                        }
+                    }
+                });
+            }
+            Assert.assertTrue(added.await(5, TimeUnit.SECONDS));
+            
+            final OperationPlan plan = builder.build();
+            Assert.assertEquals(1000, plan.size());
+            //Changes to an action after plan is built are not part of plan
+            plan.getActions().get(0).addRules(new OperationValidBehavior(COMPARISION.EQUAL, -1L));
+            
+            List<Future<Object[]>> runs = new ArrayList();
+            for(int t = 0; t < 4; t++) {
+                runs.add(executor.submit(new Callable<Object[]>() {
+                    @Override
+                    public Object[] call() throws Exception {
+                        return plan.run();
+                    }
+                }));
+            }
+            long expected = 0;
+            for(long i = 0; i < 250; i++) {
+                expected += 0 + 1 + 2 + 3 + 4 * i;
+            }
+            for(Future<Object[]> run : runs) {
+                long sum = 0;
+                for(Object value : run.get(5, TimeUnit.SECONDS)) {
+                    sum += (Long) value;
+                }
+                Assert.assertEquals(expected, sum);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Test that return values of actions with an identifier are collected into a tuple
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testResultTuple() throws Exception {
+        OperationBatch batch = new OperationBatch();
+        OperationAction name = new OperationAction(new SimpleOperations(), "record", "total");
+        name.setIdentifier("name");
+        OperationAction sum = new OperationAction(new SimpleOperations(), "add", 2L, 3L);
+        sum.setIdentifier("sum");
+        sum.addDependency(name);
+        OperationAction length = new OperationAction(new SimpleOperations(), "length", "four");
+        length.setIdentifier("length");
+        batch.add(sum, new OperationAction(new SimpleOperations(), "nothing"), name, length);
+        
+        OperationPlan plan = batch.toPlan();
+        Assert.assertEquals(Arrays.asList("name", "sum", "length"), plan.getResultSchema().getIdentifiers());
+        Assert.assertTrue(plan.getResultSchema().isPrimitive(1));
+        Assert.assertTrue(plan.getResultSchema().isPrimitive(2));
+        
+        Tuple<Summary> result = plan.runToTuple(Summary.class);
+        Assert.assertEquals("total", result.getValue("name"));
+        Assert.assertEquals(5L, result.getLong("sum"));
+        Assert.assertEquals(4, result.getInt("length"));
+        Assert.assertEquals(4, result.getValue("length"));
+        Summary summary = result.toObject("name", "sum");
+        Assert.assertEquals("total", summary.name);
+        Assert.assertEquals(5L, summary.sum);
+        Assert.assertEquals(5L, batch.runToTuple(null).getLong("sum"));
+        
+        sum.setIdentifier("name");
+        try {
+            batch.toPlan();
+            Assert.fail("Identifiers should be unique");
+        } catch(IllegalArgumentException e) {
+            //Expected
+        }
+    }
+    
+    /**
+     * Response built from a result tuple
+     */
+    public static class Summary {
+        private final String name;
+        private final long sum;
+        
+        public Summary(String name, long sum) {
+            this.name = name;
+            this.sum = sum;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests metrics of invocations
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationMetricsTest {
+    
+    public OperationMetricsTest() {
+    }
+    
+    /**
+     * Test that histogram keeps values within its precision
+     */
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000000, histogram.getMax());
+        Assert.assertEquals(500500, histogram.getMean(), 0.001);
+        Assert.assertEquals(500000, histogram.getValueAtPercentile(50), 500000 / 16);
+        Assert.assertEquals(990000, histogram.getValueAtPercentile(99), 990000 / 16);
+        Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+        
+        for(long value : new long[]{0, 31, 32, 33, 1000, Long.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            Assert.assertTrue(highest >= value && highest - value <= value / 16);
+        }
+    }
+    
+    /**
+     * Test that recorder counts calls and broken rules per action and merges them per method
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRecorder() throws Exception {
+        OperationMetricsRecorder recorder = new OperationMetricsRecorder(new JfrOperationListener());
+        OperationAction.setMetricsListener(recorder);
+        OperationAction action = new OperationAction(new SimpleOperations(), "record", "value");
+        OperationAction other = new OperationAction(new SimpleOperations(), "record", "other");
+        try {
+            action.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "value"));
+            for(int i = 0; i < 10; i++) {
+                action.invokeMethod();
+            }
+            other.invokeMethod();
+            other.invokeMethod();
+            action.invokeMethod("record", "other");
+            Assert.fail("Rule should be broken");
+        } catch(MethodBehaviourException e) {
+            OperationMetricsRecorder.Statistics statistics = recorder.getStatistics(action);
+            Assert.assertEquals(11, statistics.getCalls());
+            Assert.assertEquals(11, statistics.getLatency().getCount());
+            Assert.assertEquals(1, statistics.getRuleFailures(COMPARISION.EQUAL));
+            Assert.assertEquals(0, statistics.getInvocationFailures());
+            Assert.assertEquals(2, recorder.getStatistics(other).getCalls());
+            Assert.assertEquals(0, recorder.getStatistics(other).getRuleFailures(COMPARISION.EQUAL));
+            
+            OperationMetricsRecorder.Statistics merged = recorder.getStatistics(SimpleOperations.class.getMethod("record", String.class));
+            Assert.assertEquals(13, merged.getCalls());
+            Assert.assertEquals(13, merged.getLatency().getCount());
+            Assert.assertEquals(1, merged.getRuleFailures(COMPARISION.EQUAL));
+            
+            recorder.remove(other);
+            Assert.assertNull(recorder.getStatistics(other));
+        } finally {
+            OperationAction.setMetricsListener(null);
+        }
+    }
+}
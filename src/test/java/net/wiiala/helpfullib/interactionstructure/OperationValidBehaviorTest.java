@@ -0,0 +1,55 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests compiled rules of methods
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class OperationValidBehaviorTest {
+    
+    public OperationValidBehaviorTest() {
+    }
+    
+    /**
+     * Test that rules accept and reject values as expected
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRules() throws Exception {
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.PATTERN, "[a-z]+"), "abc"));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.PATTERN, "[a-z]+"), "ABC"));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.PATTERN, "[a-z"), "abc"));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.PATTERN, "[a-z]+"), 1));
+        
+        //Numbers are compared by value whatever wrapper class they are
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.GREATER, 5), 6L));
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.LESSOREQUAL, 5), 5.0));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.LESS, 5.5), 6));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.GREATEROREQUAL, 0), null));
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.GREATER, "a"), "b"));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.GREATER, "a"), 1));
+        
+        OperationValidBehavior range = new OperationValidBehavior(10, 20);
+        Assert.assertEquals(COMPARISION.RANGE, range.getComparision());
+        Assert.assertTrue(follows(range, 10));
+        Assert.assertTrue(follows(range, 20L));
+        Assert.assertFalse(follows(range, 20.5));
+        Assert.assertFalse(follows(range, Double.NaN));
+        
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.EQUAL, "a"), "a"));
+        Assert.assertTrue(follows(new OperationValidBehavior(COMPARISION.NOTNULL, null), "a"));
+        Assert.assertFalse(follows(new OperationValidBehavior(COMPARISION.NOTNULL, null), null));
+    }
+    
+    private static boolean follows(OperationValidBehavior rule, Object value) throws Exception {
+        try {
+            rule.validateMethod(SimpleOperations.class.getMethod("fail"), value);
+            return true;
+        } catch(MethodBehaviourException e) {
+            return false;
+        }
+    }
+}
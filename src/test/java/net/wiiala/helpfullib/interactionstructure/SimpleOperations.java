@@ -0,0 +1,96 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is only used for simple test cases of files in 'net.wiiala.helpfullib.interactionstructure' package
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class SimpleOperations {
+        private final List<String> log;
+        private final AtomicLong stall = new AtomicLong();
+        
+        public SimpleOperations() {
+            this(new ArrayList<String>());
+        }
+        
+        public SimpleOperations(List<String> log) {
+            this.log = log;
+        }
+        
+        public String record(String value) {
+            log.add(value);
+            return value;
+        }
+        
+        public String describe(int value) {
+            return "int";
+        }
+        
+        public String describe(Integer value) {
+            return "Integer";
+        }
+        
+        public String describe(Number value) {
+            return "Number";
+        }
+        
+        public String describe(Object value) {
+            return "Object";
+        }
+        
+        public long sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+            log.add("slept");
+            return millis;
+        }
+        
+        public long add(long first, long second) {
+            return first + second;
+        }
+        
+        public int length(CharSequence value) {
+            return value.length();
+        }
+        
+        public void nothing() {
+            
+        }
+        
+        public boolean meet(CountDownLatch others) throws InterruptedException {
+            others.countDown();
+            return others.await(30, TimeUnit.SECONDS);
+        }
+        
+        public void stallNext(long millis) {
+            stall.set(millis);
+        }
+        
+        public String read() throws InterruptedException {
+            long millis = stall.getAndSet(0);
+            if(millis > 0) {
+                Thread.sleep(millis);
+            }
+            return "read";
+        }
+        
+        public String fail() {
+            throw new IllegalStateException("fail");
+        }
+        
+        public String breakDown() {
+            throw new AssertionError("break down");
+        }
+        
+        public String pair(Integer first, Object second) {
+            return "Integer, Object";
+        }
+        
+        public String pair(Object first, Integer second) {
+            return "Object, Integer";
+        }
+    }
@@ -0,0 +1,17 @@
+package net.wiiala.helpfullib.interactionstructure.processor;
+
+import net.wiiala.helpfullib.interactionstructure.InteractionPlan;
+import net.wiiala.helpfullib.interactionstructure.SimpleOperations;
+
+/**
+ * This class is only used for test cases of the generated plan class in 'net.wiiala.helpfullib.interactionstructure.processor' package
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@InteractionPlan({
+    @InteractionPlan.Step(id = "sum", type = SimpleOperations.class, method = "add", parameters = {long.class, long.class}, dependsOn = "order"),
+    @InteractionPlan.Step(id = "order", type = SimpleOperations.class, method = "record", parameters = String.class),
+    @InteractionPlan.Step(id = "boxed", type = Long.class, method = "valueOf", parameters = long.class),
+    @InteractionPlan.Step(id = "empty", type = SimpleOperations.class, method = "nothing")
+})
+public class Checkout {
+    }
@@ -0,0 +1,132 @@
+package net.wiiala.helpfullib.interactionstructure.processor;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import net.wiiala.helpfullib.interactionstructure.MethodBehaviourException;
+import net.wiiala.helpfullib.interactionstructure.OperationPlan;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior;
+import net.wiiala.helpfullib.interactionstructure.SimpleOperations;
+import net.wiiala.helpfullib.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests plan classes generated from @InteractionPlan
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class InteractionPlanProcessorTest {
+    
+    public InteractionPlanProcessorTest() {
+    }
+    
+    /**
+     * Test that generated plan orders steps by dependencies and calls methods directly
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testGeneratedPlan() throws Exception {
+        List<String> log = new ArrayList();
+        SimpleOperations operations = new SimpleOperations(log);
+        CheckoutPlan builder = new CheckoutPlan().order(operations, "first").sum(operations, 2, 3).boxed(7).empty(operations);
+        
+        OperationPlan plan = builder.build();
+        Assert.assertEquals(4, plan.size());
+        Assert.assertEquals(Arrays.asList("order", "sum", "boxed", "empty"), plan.getResultSchema().getIdentifiers());
+        Assert.assertEquals(Arrays.asList((Object) "first", 5L, 7L, null), Arrays.asList(plan.run()));
+        Assert.assertEquals(Arrays.asList("first"), log);
+        
+        Tuple result = plan.runToTuple();
+        Assert.assertEquals(5, result.getLong("sum"));
+        Assert.assertEquals("first", result.getValue("order"));
+        
+        //Rules of generated plan
+        builder.addRules("sum", new OperationValidBehavior(OperationValidBehavior.COMPARISION.GREATER, 10L));
+        try {
+            builder.build().run();
+            Assert.fail("Broken rule of step was not reported");
+        } catch(MethodBehaviourException e) {
+            Assert.assertTrue(e.getMessage().endsWith("return value is not greater than value in rule"));
+        }
+        Assert.assertEquals("first", plan.run()[0]);
+        
+        try {
+            new CheckoutPlan().order(operations, "first").build();
+            Assert.fail("Missing step was not reported");
+        } catch(IllegalStateException e) {
+        }
+        try {
+            new CheckoutPlan().order(null, "first");
+            Assert.fail("Missing instance was not reported");
+        } catch(IllegalArgumentException e) {
+        }
+    }
+    
+    /**
+     * Test that step identifiers that collide with methods of every builder are compile errors,
+     * that identifiers only differing in case don't collide and that protected methods can be
+     * called from the same package
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testIdentifiers() throws Exception {
+        String header = "package fixture;\n"
+                        + "@net.wiiala.helpfullib.interactionstructure.InteractionPlan({\n";
+        String footer = "})\n"
+                        + "public class Fixture {\n"
+                        + "    protected long twice(long value) { return 2 * value; }\n"
+                        + "}\n";
+        
+        for(String id : new String[]{"hashCode", "toString", "getClass", "setStep", "build", "addRules"}) {
+            List<String> errors = compile(header + "@net.wiiala.helpfullib.interactionstructure.InteractionPlan.Step(id = \"" + id
+                                          + "\", type = Fixture.class, method = \"twice\", parameters = long.class)\n" + footer);
+            Assert.assertEquals(id, 1, errors.size());
+            Assert.assertTrue(errors.get(0), errors.get(0).startsWith("Identifier " + id + " "));
+        }
+        
+        List<String> errors = compile(header
+                                      + "@net.wiiala.helpfullib.interactionstructure.InteractionPlan.Step(id = \"total\", type = Fixture.class, method = \"twice\", parameters = long.class),\n"
+                                      + "@net.wiiala.helpfullib.interactionstructure.InteractionPlan.Step(id = \"Total\", type = Fixture.class, method = \"twice\", parameters = long.class)\n"
+                                      + footer);
+        Assert.assertEquals(Collections.emptyList(), errors);
+    }
+    
+    /**
+     * Compile one source of class fixture.Fixture with the processor
+     * @return messages of all reported errors
+     */
+    private static List<String> compile(final String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File output = Files.createTempDirectory("plan").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///fixture/Fixture.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", output.getPath(), "-s", output.getPath()),
+                null, Arrays.asList(file));
+        task.setProcessors(Arrays.asList(new InteractionPlanProcessor()));
+        task.call();
+        
+        List<String> errors = new ArrayList();
+        for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if(diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+}
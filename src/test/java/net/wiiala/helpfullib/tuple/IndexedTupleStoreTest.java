@@ -0,0 +1,56 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.Iterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests indexed tuple stores
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class IndexedTupleStoreTest {
+    
+    public IndexedTupleStoreTest() {
+    }
+    
+    /**
+     * Test that indexes follow tuples as they are added and removed
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testIndexes() throws Exception {
+        IndexedTupleStore<Object> store = new IndexedTupleStore();
+        store.addHashIndex("name");
+        for(int i = 0; i < 100; i++) {
+            store.add(new ImmutableTuple(new TupleElement("name", "item" + (i % 10)), new LongTupleElement("price", i)));
+        }
+        store.addSortedIndex("price");
+        
+        Assert.assertEquals(10, store.find("name", "item3").size());
+        Assert.assertEquals(10, store.findRange("price", 10L, true, 20L, false).size());
+        Assert.assertEquals(1, store.find("price", 42L).size());
+        
+        store.remove(new ImmutableTuple(new TupleElement("name", "item3"), new LongTupleElement("price", 13)));
+        Assert.assertEquals(9, store.find("name", "item3").size());
+        Assert.assertEquals(9, store.findRange("price", 10L, true, 20L, false).size());
+        
+        Iterator<Tuple<Object>> iterator = store.iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next().getLong("price") < 50) {
+                iterator.remove();
+            }
+        }
+        Assert.assertEquals(50, store.size());
+        Assert.assertEquals(5, store.find("name", "item3").size());
+        Assert.assertTrue(store.findRange("price", 0L, true, 49L, true).isEmpty());
+        
+        //A tuple that can't be indexed is not added to store or any index
+        try {
+            store.add(new ImmutableTuple(new TupleElement("name", "item3"), new TupleElement("price", "free")));
+            Assert.fail("Value that can't be sorted was not reported");
+        } catch(ClassCastException e) {
+        }
+        Assert.assertEquals(50, store.size());
+        Assert.assertEquals(5, store.find("name", "item3").size());
+    }
+}
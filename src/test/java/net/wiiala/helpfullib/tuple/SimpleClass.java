@@ -7,6 +7,7 @@ package net.wiiala.helpfullib.tuple;
 public class SimpleClass {
         public String value1;
         public String value2;
+        public int number;
         
         public SimpleClass() {
             
@@ -17,6 +18,11 @@ public class SimpleClass {
             this.value2 = second;
         }
         
+        public SimpleClass(String test, int number){
+            this.value1 = test;
+            this.number = number;
+        }
+        
         @Override
         public String toString(){
             return String.format("Test: %s , Second %s", value1, value2);
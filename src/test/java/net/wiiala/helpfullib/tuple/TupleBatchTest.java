@@ -0,0 +1,50 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests columnar tuple batches
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class TupleBatchTest {
+    
+    public TupleBatchTest() {
+    }
+    
+    /**
+     * Test that rows are stored in and read from columns
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testColumns() throws Exception {
+        TupleSchema schema = TupleSchema.of(new String[]{"test", "number"}, new Class<?>[]{String.class, int.class});
+        TupleBatch<SimpleClass> batch = new TupleBatch(SimpleClass.class, schema, 1);
+        for(int i = 0; i < 100; i++) {
+            batch.add("row" + i, i);
+        }
+        Assert.assertEquals(100, batch.size());
+        Assert.assertEquals(99, batch.getIntColumn("number")[99]);
+        
+        //A row with a value that don't fit is not added
+        try {
+            batch.add("rejected", "one");
+            Assert.fail("Value of wrong type was not reported");
+        } catch(IllegalArgumentException e) {
+        }
+        Assert.assertEquals(100, batch.size());
+        
+        //Row view reads and writes in the columns
+        Tuple<SimpleClass> row = batch.get(10);
+        Assert.assertEquals("row10", row.getValue("test"));
+        row.setInt("number", -1);
+        Assert.assertEquals(-1, batch.getIntColumn("number")[10]);
+        
+        List<SimpleClass> objects = batch.toObjects("test", "number");
+        Assert.assertEquals(100, objects.size());
+        Assert.assertEquals("row50", objects.get(50).value1);
+        Assert.assertEquals(-1, objects.get(10).number);
+        Assert.assertEquals(-1, row.toObject("test", "number").number);
+    }
+}
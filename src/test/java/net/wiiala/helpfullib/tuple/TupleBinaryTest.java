@@ -0,0 +1,64 @@
+package net.wiiala.helpfullib.tuple;
+
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests binary tuple files
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class TupleBinaryTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    public TupleBinaryTest() {
+    }
+    
+    /**
+     * Test that written tuples are read back as views of file
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteAndRead() throws Exception {
+        TupleSchema schema = TupleSchema.of(new String[]{"test", "number", "price", "extra"}, 
+                                            new Class<?>[]{String.class, int.class, double.class, Object.class});
+        Path file = folder.newFile("tuples.bin").toPath();
+        
+        try(TupleBinaryWriter writer = new TupleBinaryWriter(new FileOutputStream(file.toFile()), schema)) {
+            for(int i = 0; i < 1000; i++) {
+                writer.write(new Tuple(schema, "räd " + i, i, i / 2.0, i % 2 == 0 ? null : (Object) (long) i));
+                if(i % 100 == 0) {
+                    //A rejected row is not written
+                    try {
+                        writer.write(new Tuple(schema, "rejected", -1, -1.0, new Object()));
+                        Assert.fail("Value that can't be written was not reported");
+                    } catch(IllegalArgumentException e) {
+                    }
+                }
+            }
+        }
+        
+        try(TupleBinaryReader<SimpleClass> reader = new TupleBinaryReader(SimpleClass.class, file)) {
+            Assert.assertSame(schema, reader.getSchema());
+            
+            int count = 0;
+            Iterator<Tuple<SimpleClass>> rows = reader.iterator();
+            while(rows.hasNext()) {
+                Tuple<SimpleClass> row = rows.next();
+                Assert.assertEquals("räd " + count, row.getValue("test"));
+                Assert.assertEquals(count, row.getInt("number"));
+                Assert.assertEquals(count / 2.0, row.getDouble("price"), 0);
+                Assert.assertEquals(count % 2 == 0 ? null : (Object) (long) count, row.getValue("extra"));
+                count++;
+            }
+            Assert.assertEquals(1000, count);
+            Assert.assertEquals(0, reader.iterator().next().toObject("test", "number").number);
+        }
+    }
+}
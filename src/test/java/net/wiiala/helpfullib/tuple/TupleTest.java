@@ -1,7 +1,13 @@
 package net.wiiala.helpfullib.tuple;
 
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -46,5 +52,249 @@ public class TupleTest {
         Assert.assertTrue( tuple.toObject("test","second") instanceof SimpleClass );
         Assert.assertNotEquals(null, tuple.toObject("test","second"));
     }
+    
+    /**
+     * Test that tuples of same identifiers share one schema
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSharedSchema() throws Exception {
+        Tuple first = new Tuple(new TupleElement("id", 1), new TupleElement("name", "first"));
+        Tuple second = new Tuple(new TupleElement("id", 2), new TupleElement("name", "second"));
+        Assert.assertSame(first.getSchema(), second.getSchema());
+        Assert.assertEquals(1, first.getSchema().indexOf("name"));
+        Assert.assertEquals(-1, first.getSchema().indexOf("missing"));
+        
+        //Tuple created directly on schema behaves as one created through elements
+        Tuple third = new Tuple(first.getSchema(), 3, "third");
+        Assert.assertEquals("third", third.getElement("name").value);
+        Assert.assertEquals(3, third.getValue("id"));
+        Assert.assertNull(third.getElement("missing"));
+    }
+    
+    /**
+     * Test that same identifier can't occur several times
+     * @throws java.lang.Exception
+     */
+    @Test(expected = InvalidTupleException.class)
+    public void testDuplicateIdentifier() throws Exception {
+        new Tuple(new TupleElement("id", 1), new TupleElement("id", 2));
+    }
+    
+    /**
+     * Test of toObject with primitive constructor parameter
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testToObjectPrimitive() throws Exception {
+        elements = new ArrayList();
+        elements.add(new TupleElement("test", "My first value"));
+        elements.add(new TupleElement("number", 42));
+        tuple = new Tuple(SimpleClass.class, elements);
+        
+        SimpleClass created = tuple.toObject("test", "number");
+        Assert.assertEquals("My first value", created.value1);
+        Assert.assertEquals(42, created.number);
+        
+        //Factory is shared between calls
+        Assert.assertSame(TupleObjectFactory.of(SimpleClass.class, tuple.getSchema(), "test", "number"),
+                          TupleObjectFactory.of(SimpleClass.class, tuple.getSchema(), "test", "number"));
+    }
+    
+    /**
+     * Test that constructor is chosen by classes of values, also when they change between calls
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testToObjectOverloads() throws Exception {
+        TupleSchema schema = TupleSchema.of("test", "second");
+        TupleObjectFactory<SimpleClass> factory = TupleObjectFactory.of(SimpleClass.class, schema, "test", "second");
+        Tuple text = new Tuple(SimpleClass.class, schema, "a", "b");
+        Tuple number = new Tuple(SimpleClass.class, schema, "a", 7);
+        
+        for(int i = 0; i < 3; i++) {
+            Assert.assertEquals("b", factory.create(text).value2);
+            Assert.assertEquals(7, factory.create(number).number);
+        }
+    }
+    
+    /**
+     * Test that the most specific overload is chosen and that ambiguous overloads are reported
+     */
+    @Test
+    public void testOverloads() {
+        List<Class<?>[]> candidates = new ArrayList();
+        candidates.add(new Class<?>[]{int.class});
+        candidates.add(new Class<?>[]{Integer.class});
+        candidates.add(new Class<?>[]{Object.class});
+        Assert.assertEquals(1, Overloads.mostSpecific(candidates, new Class<?>[]{Integer.class}));
+        Assert.assertEquals(2, Overloads.mostSpecific(candidates, new Class<?>[]{String.class}));
+        Assert.assertEquals(-1, Overloads.mostSpecific(candidates, new Class<?>[]{String.class, String.class}));
+        
+        candidates.clear();
+        candidates.add(new Class<?>[]{Integer.class, Object.class});
+        candidates.add(new Class<?>[]{Object.class, Integer.class});
+        try {
+            Overloads.mostSpecific(candidates, new Class<?>[]{Integer.class, Integer.class});
+            Assert.fail("Ambiguous overloads were not reported");
+        } catch(IllegalArgumentException e) {
+        }
+        Assert.assertEquals(0, Overloads.mostSpecific(candidates, new Class<?>[]{Integer.class, String.class}));
+    }
+    
+    /**
+     * Test that primitive elements are stored in primitive slots
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testPrimitiveSlots() throws Exception {
+        Tuple primitive = new Tuple(new LongTupleElement("timestamp", 1234567890123L), 
+                                    new DoubleTupleElement("price", 9.5),
+                                    new TupleElement("name", "item"));
+        Assert.assertTrue(primitive.getSchema().isPrimitive(0));
+        Assert.assertFalse(primitive.getSchema().isPrimitive(2));
+        Assert.assertEquals(1234567890123L, primitive.getLong("timestamp"));
+        Assert.assertEquals(9.5, primitive.getDouble("price"), 0);
+        
+        //Boxed access still works
+        Assert.assertEquals(1234567890123L, primitive.getElement("timestamp").value);
+        Assert.assertTrue(primitive.getElement("price") instanceof DoubleTupleElement);
+        
+        primitive.setLong("timestamp", 42);
+        Assert.assertEquals(42L, primitive.getValue("timestamp"));
+        
+        //Schema of primitive slots is not the schema of object slots
+        Assert.assertNotSame(TupleSchema.of("timestamp", "price", "name"), primitive.getSchema());
+    }
+    
+    /**
+     * Test that schemas are shared while used and released when no longer used
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSchemaCache() throws Exception {
+        TupleSchema schema = TupleSchema.of("cached" + System.nanoTime(), "schema");
+        Assert.assertSame(schema, TupleSchema.of(schema.getIdentifier(0), "schema"));
+        
+        WeakReference<TupleSchema> released = new WeakReference(schema);
+        schema = null;
+        for(int i = 0; i < 100 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("Cache kept a schema that is no longer used", released.get());
+    }
+    
+    /**
+     * Test that cached object factories don't keep the class loader of their class alive
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testFactoryCache() throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[]{SimpleClass.class.getProtectionDomain().getCodeSource().getLocation()}, null);
+        Class<?> loaded = loader.loadClass(SimpleClass.class.getName());
+        Assert.assertNotSame(SimpleClass.class, loaded);
+        TupleSchema schema = TupleSchema.of("test", "second");
+        Assert.assertSame(TupleObjectFactory.of(loaded, schema, "test", "second"), TupleObjectFactory.of(loaded, schema, "test", "second"));
+        Assert.assertEquals("Test: a , Second b", TupleObjectFactory.of(loaded, schema, "test", "second").create(new Tuple(schema, "a", "b")).toString());
+        
+        WeakReference<ClassLoader> released = new WeakReference(loader);
+        loader.close();
+        loader = null;
+        loaded = null;
+        for(int i = 0; i < 100 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("Factory cache kept a class loader that is no longer used", released.get());
+    }
+    
+    /**
+     * Test that values are set by position in schema with the same checks as by identifier
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSetValueBySlot() throws Exception {
+        TupleSchema schema = TupleSchema.of(new String[]{"name", "count"}, new Class<?>[]{String.class, long.class});
+        Tuple tuple = new Tuple(schema);
+        tuple.setValue(0, "slot");
+        tuple.setValue(1, 5L);
+        Assert.assertEquals("slot", tuple.getValue("name"));
+        Assert.assertEquals(5, tuple.getLong("count"));
+        try {
+            tuple.setValue(1, "five");
+            Assert.fail("Value of wrong type was not reported");
+        } catch(IllegalArgumentException e) {
+        }
+        try {
+            tuple.setValue(2, "none");
+            Assert.fail("Missing slot was not reported");
+        } catch(IndexOutOfBoundsException e) {
+        }
+    }
+    
+    /**
+     * Test that a primitive slot don't accept a value of wrong type
+     * @throws java.lang.Exception
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrimitiveSlotWrongType() throws Exception {
+        new Tuple(new IntTupleElement("counter", 1)).setValue("counter", "one");
+    }
+    
+    /**
+     * Test that tuples are written as valid JSON
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testJson() throws Exception {
+        Tuple json = new Tuple(new LongTupleElement("id", -42), 
+                               new TupleElement("name", "say \"hi\"\n"),
+                               new BooleanTupleElement("valid", true),
+                               new TupleElement("missing", null));
+        String expected = "{\"id\":-42,\"name\":\"say \\\"hi\\\"\\n\",\"valid\":true,\"missing\":null}";
+        Assert.assertEquals(expected, json.toString());
+        
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        new TupleJsonWriter().write(json, buffer);
+        Assert.assertEquals(expected, new String(buffer.array(), 0, buffer.position(), "UTF-8"));
+    }
+    
+    /**
+     * Test that immutable tuples can be used as map keys
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testImmutableTuple() throws Exception {
+        ImmutableTuple first = new ImmutableTuple(new TupleElement("name", "key"), new LongTupleElement("id", 7));
+        ImmutableTuple second = ImmutableTuple.copyOf(new Tuple(new TupleElement("name", "key"), new LongTupleElement("id", 7)));
+        ImmutableTuple third = new ImmutableTuple(new TupleElement("name", "key"), new LongTupleElement("id", 8));
+        
+        Map<ImmutableTuple, String> map = new HashMap();
+        map.put(first, "value");
+        Assert.assertEquals("value", map.get(second));
+        Assert.assertNull(map.get(third));
+        Assert.assertEquals(0, first.compareTo(second));
+        Assert.assertTrue(first.compareTo(third) < 0);
+        
+        //Values that can't be ordered are rejected instead of being ordered as equal
+        Object value = new Object();
+        ImmutableTuple plain = new ImmutableTuple(new TupleElement("name", value));
+        Assert.assertEquals(0, plain.compareTo(new ImmutableTuple(new TupleElement("name", value))));
+        try {
+            plain.compareTo(new ImmutableTuple(new TupleElement("name", new Object())));
+            Assert.fail("Values that can't be ordered were compared");
+        } catch(ClassCastException e) {
+        }
+    }
+    
+    /**
+     * Test that immutable tuples can't be changed
+     * @throws java.lang.Exception
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutableTupleUnchangeable() throws Exception {
+        new ImmutableTuple(new TupleElement("name", "key")).setValue("name", "other");
+    }
  
 }
@@ -0,0 +1,18 @@
+package net.wiiala.helpfullib.tuple.processor;
+
+import net.wiiala.helpfullib.tuple.TupleType;
+
+/**
+ * This class is only used for test cases of generated tuple classes whose elements are named like locals of generated code
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@TupleType
+public class Envelope {
+        final Object tuple;
+        final long weight;
+        
+        public Envelope(Object tuple, long weight) {
+            this.tuple = tuple;
+            this.weight = weight;
+        }
+    }
@@ -0,0 +1,24 @@
+package net.wiiala.helpfullib.tuple.processor;
+
+import net.wiiala.helpfullib.tuple.TupleType;
+
+/**
+ * This class is only used for test cases of the generated tuple class in 'net.wiiala.helpfullib.tuple.processor' package
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+@TupleType
+public class Point {
+        final long x;
+        final long y;
+        private final String label;
+        
+        public Point(long x, long y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
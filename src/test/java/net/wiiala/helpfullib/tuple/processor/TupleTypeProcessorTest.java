@@ -0,0 +1,43 @@
+package net.wiiala.helpfullib.tuple.processor;
+
+import net.wiiala.helpfullib.tuple.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests tuple classes generated from @TupleType
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class TupleTypeProcessorTest {
+    
+    public TupleTypeProcessorTest() {
+    }
+    
+    /**
+     * Test that generated tuple class converts between object, typed and generic tuple
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testGeneratedTuple() throws Exception {
+        PointTuple typed = PointTuple.of(new Point(1, 2, "origin"));
+        Assert.assertEquals(2, typed.getY());
+        Assert.assertEquals("origin", typed.toObject().getLabel());
+        
+        Tuple<Point> tuple = typed.toTuple();
+        Assert.assertSame(PointTuple.SCHEMA, tuple.getSchema());
+        Assert.assertEquals(1, tuple.getLong("x"));
+        Assert.assertEquals("origin", tuple.toObject("x", "y", "label").getLabel());
+        Assert.assertEquals("origin", PointTuple.fromTuple(tuple).getLabel());
+    }
+    
+    /**
+     * Test that an element named like a local of generated code keeps its own value
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testElementNames() throws Exception {
+        Tuple<Envelope> tuple = EnvelopeTuple.of(new Envelope("letter", 20)).toTuple();
+        Assert.assertEquals("letter", tuple.getValue("tuple"));
+        Assert.assertEquals(20, tuple.getLong("weight"));
+    }
+}
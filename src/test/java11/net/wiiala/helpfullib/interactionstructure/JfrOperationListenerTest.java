@@ -0,0 +1,73 @@
+package net.wiiala.helpfullib.interactionstructure;
+
+import java.nio.file.Path;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.wiiala.helpfullib.interactionstructure.OperationValidBehavior.COMPARISION;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests Flight Recorder events of the Java 11 version of the listener,
+ * skipped when the Java 7 version is used
+ * @author Gustav Wiiala <wiiala.gustav@gmail.com>
+ */
+public class JfrOperationListenerTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    public JfrOperationListenerTest() {
+    }
+    
+    /**
+     * Test that invocations and broken rules are recorded as events
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testEvents() throws Exception {
+        Assume.assumeTrue(JfrOperationListener.isAvailable());
+        Path file = folder.newFile("operations.jfr").toPath();
+        
+        OperationAction.setMetricsListener(new JfrOperationListener());
+        try(Recording recording = new Recording()) {
+            recording.enable("net.wiiala.helpfullib.OperationInvocation");
+            recording.enable("net.wiiala.helpfullib.RuleBroken");
+            recording.start();
+            
+            OperationAction action = new OperationAction(new SimpleOperations(), "record", "value");
+            action.addRules(new OperationValidBehavior(COMPARISION.EQUAL, "value"));
+            action.invokeMethod();
+            try {
+                action.invokeMethod("record", "other");
+                Assert.fail("Rule should be broken");
+            } catch(MethodBehaviourException e) {
+                //Expected
+            }
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            OperationAction.setMetricsListener(null);
+        }
+        
+        int invocations = 0;
+        int broken = 0;
+        for(RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            Assert.assertEquals(SimpleOperations.class.getName(), event.getString("declaringClass"));
+            Assert.assertEquals("record", event.getString("method"));
+            if(event.getEventType().getName().equals("net.wiiala.helpfullib.RuleBroken")) {
+                Assert.assertEquals("EQUAL", event.getString("comparision"));
+                broken++;
+            } else {
+                Assert.assertFalse(event.getBoolean("failed"));
+                invocations++;
+            }
+        }
+        Assert.assertEquals(2, invocations);
+        Assert.assertEquals(1, broken);
+    }
+}